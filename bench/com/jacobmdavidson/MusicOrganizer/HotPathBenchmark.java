@@ -0,0 +1,362 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+
+/**
+ * HotPathBenchmark class. Measures the code that runs once per track:
+ * MusicFile construction for mp3 and m4a files, reading their tags with the
+ * fast tag reader and with Jaudiotagger, cleanString,
+ * constructDestination, and MusicFileList.visitFile end to end against a
+ * synthetic library on local disk. Each benchmark is warmed up, then measured
+ * over several fixed-time iterations, and reported as throughput together with
+ * the bytes allocated per operation, read from the same per-thread allocation
+ * counters a GC profiler uses. Parts of Jaudiotagger fail to link on runtimes
+ * newer than Java 8, and a benchmark that reaches them is reported as skipped.
+ * 
+ * Usage: HotPathBenchmark [work folder] [iteration seconds]
+ */
+public class HotPathBenchmark {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Number of warmup iterations */
+	private static final int WARMUP_ITERATIONS = 3;
+
+	/** Number of measured iterations */
+	private static final int MEASURED_ITERATIONS = 5;
+
+	/** Keeps Jaudiotagger quiet, and the quieted logger from being collected */
+	private static final Logger TAGGER_LOGGER = Logger
+			.getLogger("org.jaudiotagger");
+
+	/** Per-thread allocation counters, or null if the JVM has none */
+	private static final com.sun.management.ThreadMXBean THREADS = allocationCounters();
+
+	/** Length of each iteration, in nanoseconds */
+	private static long iterationNanos = 1000000000L;
+
+	/** Consumes benchmark results so the JIT cannot eliminate the work */
+	static volatile int sink;
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Run every benchmark and print the results
+	 * 
+	 * @param args
+	 *            optional work folder and iteration length in seconds
+	 * @throws Exception
+	 *             if the synthetic library cannot be created
+	 */
+	public static void main(String[] args) throws Exception {
+		TAGGER_LOGGER.setLevel(Level.OFF);
+		Path work = args.length > 0 ? Paths.get(args[0]) : Files
+				.createTempDirectory("musicorganizer-bench");
+		if (args.length > 1) {
+			iterationNanos = (long) (Double.parseDouble(args[1]) * 1e9);
+		}
+
+		// 1000 tracks in 100 albums, with a cover image in every album
+		Path library = work.resolve("library");
+		if (!Files.isDirectory(library)) {
+			SyntheticLibrary.create(library, 20, 5, 10, 1);
+		}
+		final File mp3 = library.resolve("Artist 0/Album 0/0.mp3").toFile();
+		final File m4a = library.resolve("Artist 0/Album 0/1.m4a").toFile();
+		final String outputPath = work.resolve("output").toString();
+		final ScanIndex.Entry indexEntry = new ScanIndex.Entry(0, 0,
+				"The Artist 0", "Album 0 (Deluxe Edition)",
+				"Track 1 'Remastered'", "", false);
+
+		System.out.println(String.format(Locale.ROOT,
+				"%-28s %12s %10s %12s", "Benchmark", "ops/s", "error",
+				"alloc B/op"));
+
+		run("MusicFile(mp3)", new Operation() {
+			@Override
+			int run() {
+				sink ^= new MusicFile(mp3, outputPath).hashCode();
+				return 1;
+			}
+		});
+		run("MusicFile(m4a)", new Operation() {
+			@Override
+			int run() {
+				sink ^= new MusicFile(m4a, outputPath).hashCode();
+				return 1;
+			}
+		});
+		run("FastTagReader(mp3)", new Operation() {
+			@Override
+			int run() throws Exception {
+				sink ^= FastTagReader.read(mp3).getTitle().hashCode();
+				return 1;
+			}
+		});
+		run("Jaudiotagger(mp3)", new Operation() {
+			@Override
+			int run() throws Exception {
+				sink ^= AudioFileIO.read(mp3).getTag()
+						.getFirst(FieldKey.TITLE).hashCode();
+				return 1;
+			}
+		});
+		run("FastTagReader(m4a)", new Operation() {
+			@Override
+			int run() throws Exception {
+				sink ^= FastTagReader.read(m4a).getTitle().hashCode();
+				return 1;
+			}
+		});
+		run("Jaudiotagger(m4a)", new Operation() {
+			@Override
+			int run() throws Exception {
+				sink ^= AudioFileIO.read(m4a).getTag()
+						.getFirst(FieldKey.TITLE).hashCode();
+				return 1;
+			}
+		});
+		run("cleanString", new Operation() {
+			@Override
+			int run() {
+				sink ^= MusicFile.cleanString(
+						"Track 12 / \"Remastered\": Live at <Wembley>?")
+						.length();
+				return 1;
+			}
+		});
+		run("constructDestination", new Operation() {
+			@Override
+			int run() {
+				sink ^= new MusicFile(m4a, outputPath, indexEntry)
+						.getDestinationFile().hashCode();
+				return 1;
+			}
+		});
+		run("visitFile (end to end)", new VisitFileOperation(library, work));
+	}
+
+	/**
+	 * Warm up and measure one benchmark, then print its results. A benchmark
+	 * whose code cannot be linked on this runtime is skipped.
+	 * 
+	 * @param name
+	 *            benchmark name
+	 * @param operation
+	 *            the benchmarked operation
+	 * @throws Exception
+	 *             if the operation fails
+	 */
+	private static void run(String name, Operation operation) throws Exception {
+		try {
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				iteration(operation, null);
+			}
+		} catch (LinkageError e) {
+			System.out.println(String.format(Locale.ROOT, "%-28s skipped: %s",
+					name, e.getClass().getSimpleName()));
+			return;
+		}
+		double[] throughput = new double[MEASURED_ITERATIONS];
+		long[] allocation = new long[2];
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			throughput[i] = iteration(operation, allocation);
+		}
+
+		// Mean and 99.9% confidence half-width, assuming normal iterations
+		double mean = 0;
+		for (double value : throughput) {
+			mean += value / throughput.length;
+		}
+		double variance = 0;
+		for (double value : throughput) {
+			variance += (value - mean) * (value - mean)
+					/ (throughput.length - 1);
+		}
+		double error = 3.29 * Math.sqrt(variance / throughput.length);
+		String bytesPerOp = THREADS == null ? "n/a" : String.format(
+				Locale.ROOT, "%.1f", (double) allocation[0] / allocation[1]);
+		System.out.println(String.format(Locale.ROOT,
+				"%-28s %12.1f %10.1f %12s", name, mean, error, bytesPerOp));
+	}
+
+	/**
+	 * Run the operation repeatedly for one iteration
+	 * 
+	 * @param operation
+	 *            the benchmarked operation
+	 * @param allocation
+	 *            accumulates the bytes allocated and the operation count, or
+	 *            null during warmup
+	 * @return throughput of the iteration, in operations per second
+	 * @throws Exception
+	 *             if the operation fails
+	 */
+	private static double iteration(Operation operation, long[] allocation)
+			throws Exception {
+		long threadId = Thread.currentThread().getId();
+		long operations = 0;
+		long elapsed = 0;
+		long allocated = 0;
+		while (elapsed < iterationNanos) {
+			long allocatedBefore = allocatedBytes(threadId);
+			long start = System.nanoTime();
+			operations += operation.run();
+			elapsed += System.nanoTime() - start;
+			allocated += allocatedBytes(threadId) - allocatedBefore;
+			operation.tearDown();
+		}
+		if (allocation != null) {
+			allocation[0] += allocated;
+			allocation[1] += operations;
+		}
+		return operations * 1e9 / elapsed;
+	}
+
+	/**
+	 * Return the bytes allocated so far by a thread
+	 * 
+	 * @param threadId
+	 *            id of the thread
+	 * @return allocated bytes, or 0 if unsupported
+	 */
+	private static long allocatedBytes(long threadId) {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(threadId);
+	}
+
+	/**
+	 * Return the JVM's per-thread allocation counters, if it has them
+	 * 
+	 * @return the counters, or null
+	 */
+	private static com.sun.management.ThreadMXBean allocationCounters() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory
+				.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+			if (counters.isThreadAllocatedMemorySupported()) {
+				counters.setThreadAllocatedMemoryEnabled(true);
+				return counters;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Recursively delete a folder
+	 * 
+	 * @param folder
+	 *            folder to delete
+	 * @throws IOException
+	 *             if the folder cannot be deleted
+	 */
+	private static void delete(Path folder) throws IOException {
+		Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attr) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+					throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class for a benchmarked operation. The tear down runs outside the
+	 * measured time.
+	 */
+	abstract static class Operation {
+
+		/**
+		 * Run the operation once
+		 * 
+		 * @return number of operations performed
+		 * @throws Exception
+		 *             if the operation fails
+		 */
+		abstract int run() throws Exception;
+
+		/**
+		 * Undo the side effects of the operation
+		 * 
+		 * @throws Exception
+		 *             if the clean up fails
+		 */
+		void tearDown() throws Exception {
+		}
+	}
+
+	/**
+	 * Inner class that walks the whole synthetic library into a fresh output
+	 * folder with the sequential executor, so all work stays on the measured
+	 * thread. One operation is one visited file.
+	 */
+	static class VisitFileOperation extends Operation {
+
+		/** The synthetic library */
+		private final Path library;
+
+		/** Output folder of the current walk */
+		private final Path output;
+
+		/** Settings for the walk */
+		private final OrganizerConfig config = new OrganizerConfig();
+
+		VisitFileOperation(Path library, Path work) {
+			this.library = library;
+			this.output = work.resolve("visitFile-output");
+			config.setExecutionMode(ExecutionMode.SEQUENTIAL);
+			config.setFindDuplicates(false);
+			config.setUseScanIndex(false);
+		}
+
+		@Override
+		int run() throws Exception {
+			MusicFileList musicFileList = new MusicFileList(output.toString(),
+					line -> {
+					}, config);
+			musicFileList.initializeErrors();
+			musicFileList.startMigration();
+			musicFileList.walk(library);
+			musicFileList.awaitMigration();
+			return musicFileList.getNumVisibleFiles();
+		}
+
+		@Override
+		void tearDown() throws Exception {
+			if (Files.exists(output)) {
+				delete(output);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * SyntheticLibrary class. Writes small but well formed mp3 and m4a files with
+ * artist, album artist, album and title tags, so the benchmarks can run
+ * against a reproducible music library on local disk without shipping audio.
+ */
+public class SyntheticLibrary {
+
+	/** A silent MPEG-1 layer III frame header: 128 kbps, 44.1 kHz */
+	private static final byte[] MP3_FRAME_HEADER = { (byte) 0xFF, (byte) 0xFB,
+			(byte) 0x90, (byte) 0x64 };
+
+	/** Length of one 128 kbps, 44.1 kHz frame without padding */
+	private static final int MP3_FRAME_LENGTH = 417;
+
+	/**
+	 * Create a library of artist/album folders under the specified root
+	 *
+	 * @param root
+	 *            - folder to create the library in
+	 * @param artists
+	 *            - number of artists
+	 * @param albumsPerArtist
+	 *            - number of albums per artist
+	 * @param tracksPerAlbum
+	 *            - number of tracks per album, alternating mp3 and m4a
+	 * @param otherFilesPerAlbum
+	 *            - number of non-music files per album
+	 * @throws IOException
+	 *             if the library cannot be written
+	 */
+	public static void create(Path root, int artists, int albumsPerArtist,
+			int tracksPerAlbum, int otherFilesPerAlbum) throws IOException {
+		for (int artist = 0; artist < artists; artist++) {
+			for (int album = 0; album < albumsPerArtist; album++) {
+				Path folder = root.resolve("Artist " + artist).resolve(
+						"Album " + album);
+				Files.createDirectories(folder);
+				for (int track = 0; track < tracksPerAlbum; track++) {
+					String artistName = "The Artist: " + artist;
+					String albumName = "Album? " + album + " (Deluxe Edition)";
+					String title = "Track " + track + " / \"Remastered\"";
+					if (track % 2 == 0) {
+						writeMp3(folder.resolve(track + ".mp3"), artistName,
+								artistName, albumName, title);
+					} else {
+						writeM4a(folder.resolve(track + ".m4a"), artistName,
+								artistName, albumName, title);
+					}
+				}
+				for (int other = 0; other < otherFilesPerAlbum; other++) {
+					Files.write(folder.resolve("cover" + other + ".jpg"),
+							new byte[1024]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write an mp3 file: an ID3v2.3 tag followed by silent frames
+	 *
+	 * @param file
+	 *            - file to write
+	 * @param artist
+	 *            - artist tag
+	 * @param albumArtist
+	 *            - album artist tag
+	 * @param album
+	 *            - album tag
+	 * @param title
+	 *            - title tag
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void writeMp3(Path file, String artist, String albumArtist,
+			String album, String title) throws IOException {
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		writeId3Frame(frames, "TPE1", artist);
+		writeId3Frame(frames, "TPE2", albumArtist);
+		writeId3Frame(frames, "TALB", album);
+		writeId3Frame(frames, "TIT2", title);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { 'I', 'D', '3', 3, 0, 0 });
+		writeSyncsafe(out, frames.size());
+		frames.writeTo(out);
+		for (int i = 0; i < 40; i++) {
+			out.write(MP3_FRAME_HEADER);
+			out.write(new byte[MP3_FRAME_LENGTH - MP3_FRAME_HEADER.length]);
+		}
+		Files.write(file, out.toByteArray());
+	}
+
+	/**
+	 * Write an m4a file: the ftyp, mdat and moov boxes of a single, one frame
+	 * AAC track with an iTunes style ilst tag
+	 *
+	 * @param file
+	 *            - file to write
+	 * @param artist
+	 *            - artist tag
+	 * @param albumArtist
+	 *            - album artist tag
+	 * @param album
+	 *            - album tag
+	 * @param title
+	 *            - title tag
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void writeM4a(Path file, String artist, String albumArtist,
+			String album, String title) throws IOException {
+		byte[] ftyp = box("ftyp", concat("M4A ".getBytes(StandardCharsets.US_ASCII),
+				new byte[4], "M4A mp42isom".getBytes(StandardCharsets.US_ASCII)));
+		byte[] samples = new byte[512];
+		byte[] mdat = box("mdat", samples);
+		int sampleOffset = ftyp.length + 8;
+
+		byte[] mvhd = fullBox("mvhd", ints(0, 0, 1000, 1000, 0x00010000),
+				new byte[] { 1, 0 }, new byte[10], matrix(), new byte[24],
+				ints(2));
+		byte[] tkhd = box("tkhd", ints(7, 0, 0, 1, 0, 1000), new byte[8],
+				new byte[] { 0, 0, 0, 0, 1, 0, 0, 0 }, matrix(), ints(0, 0));
+		byte[] mdhd = fullBox("mdhd", ints(0, 0, 44100, 1024), new byte[4]);
+		byte[] hdlr = fullBox("hdlr", ints(0),
+				"soun".getBytes(StandardCharsets.US_ASCII), new byte[13]);
+		byte[] esds = fullBox("esds", new byte[] { 3, 25, 0, 1, 0, 4, 17,
+				0x40, 0x15, 0, 0, 0, 0, 1, (byte) 0xF4, 0, 0, 1, (byte) 0xF4,
+				0, 5, 2, 0x12, 0x10, 6, 1, 2 });
+		byte[] mp4a = box("mp4a", new byte[6], new byte[] { 0, 1 },
+				new byte[8], new byte[] { 0, 2, 0, 16, 0, 0, 0, 0 },
+				ints(44100 << 16), esds);
+		byte[] stbl = box("stbl", fullBox("stsd", ints(1), mp4a),
+				fullBox("stts", ints(1, 1, 1024)),
+				fullBox("stsc", ints(1, 1, 1, 1)),
+				fullBox("stsz", ints(0, 1, samples.length)),
+				fullBox("stco", ints(1, sampleOffset)));
+		byte[] minf = box("minf", fullBox("smhd", new byte[4]),
+				box("dinf", fullBox("dref", ints(1), box("url ", ints(1)))),
+				stbl);
+		byte[] trak = box("trak", tkhd, box("mdia", mdhd, hdlr, minf));
+
+		byte[] ilst = box("ilst", textItem("\u00A9nam", title),
+				textItem("\u00A9ART", artist), textItem("aART", albumArtist),
+				textItem("\u00A9alb", album));
+		byte[] meta = fullBox("meta", fullBox("hdlr", ints(0),
+				"mdirappl".getBytes(StandardCharsets.US_ASCII), new byte[9]),
+				ilst);
+		byte[] moov = box("moov", mvhd, trak, box("udta", meta));
+		Files.write(file, concat(ftyp, mdat, moov));
+	}
+
+	/**
+	 * Build an ilst text item: a box named after the field, holding a UTF-8
+	 * data box
+	 */
+	private static byte[] textItem(String name, String value) {
+		return box(name, box("data", ints(1, 0),
+				value.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Build a box from its type and content
+	 */
+	private static byte[] box(String type, byte[]... content) {
+		byte[] body = concat(content);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			new DataOutputStream(out).writeInt(body.length + 8);
+			out.write(type.getBytes(StandardCharsets.ISO_8859_1));
+			out.write(body);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Build a full box, with a zero version and flags before the content
+	 */
+	private static byte[] fullBox(String type, byte[]... content) {
+		return box(type, new byte[4], concat(content));
+	}
+
+	/**
+	 * Encode big-endian integers
+	 */
+	private static byte[] ints(int... values) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		try {
+			for (int value : values) {
+				data.writeInt(value);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * The identity transformation matrix of mvhd and tkhd
+	 */
+	private static byte[] matrix() {
+		return ints(0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000);
+	}
+
+	/**
+	 * Join byte arrays
+	 */
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.write(part, 0, part.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write an ID3v2.3 text frame, encoded as UTF-16 with a byte order mark
+	 */
+	private static void writeId3Frame(ByteArrayOutputStream out, String id,
+			String text) throws IOException {
+		byte[] value = text.getBytes(StandardCharsets.UTF_16);
+		DataOutputStream data = new DataOutputStream(out);
+		data.write(id.getBytes(StandardCharsets.US_ASCII));
+		data.writeInt(value.length + 1);
+		data.writeShort(0);
+		data.write(1);
+		data.write(value);
+	}
+
+	/**
+	 * Write a 28 bit syncsafe integer, as used for the ID3v2 tag size
+	 */
+	private static void writeSyncsafe(ByteArrayOutputStream out, int value) {
+		out.write((value >> 21) & 0x7F);
+		out.write((value >> 14) & 0x7F);
+		out.write((value >> 7) & 0x7F);
+		out.write(value & 0x7F);
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * CommandLine class. Runs a migration without a GUI, so the organizer can be
+ * scheduled on headless servers. The outcome of every file is streamed to
+ * standard output, or to a report file, as one JSON object per line, and the
+ * results summary is printed to standard error. Nothing in this path loads
+ * AWT or Swing.
+ * 
+ * Usage: CommandLine [--report file] [--watch] [--setting=value ...] source
+ * destination
+ * 
+ * Each --setting=value option overrides the OrganizerConfig setting of the
+ * same name, exactly like -Dmusicorganizer.setting=value. With --watch the
+ * source is watched as a drop folder until the process is stopped, and files
+ * dropped into it are migrated in batches as they settle.
+ */
+public class CommandLine {
+
+	/**
+	 * Jaudiotagger logs warnings for many ordinary files, which would bury the
+	 * summary. The reference keeps the quieted logger from being collected.
+	 */
+	private static final Logger TAGGER_LOGGER = Logger
+			.getLogger("org.jaudiotagger");
+
+	/** Usage message printed for invalid arguments */
+	private static final String USAGE = "Usage: CommandLine [--report file] "
+			+ "[--watch] [--setting=value ...] source destination";
+
+	/**
+	 * Run a migration from the command line
+	 * 
+	 * @param args
+	 *            command line arguments
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Run a migration from the command line
+	 * 
+	 * @param args
+	 *            command line arguments
+	 * @return the exit status: 0 once the traversal completed, 1 if it failed,
+	 *         and 2 for invalid arguments
+	 */
+	static int run(String[] args) {
+		String source = null;
+		String destination = null;
+		String reportFile = null;
+		boolean watch = false;
+
+		// Parse the options and the two positional arguments
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--report") && i + 1 < args.length) {
+				reportFile = args[++i];
+			} else if (arg.equals("--watch")) {
+				watch = true;
+			} else if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+				int equals = arg.indexOf('=');
+				System.setProperty("musicorganizer." + arg.substring(2, equals),
+						arg.substring(equals + 1));
+			} else if (arg.startsWith("--")) {
+				System.err.println("Unknown option " + arg);
+				System.err.println(USAGE);
+				return 2;
+			} else if (source == null) {
+				source = arg;
+			} else if (destination == null) {
+				destination = arg;
+			} else {
+				System.err.println(USAGE);
+				return 2;
+			}
+		}
+		if (destination == null) {
+			System.err.println(USAGE);
+			return 2;
+		}
+		// The scan index and journal are keyed by absolute source paths
+		Path sourcePath = Paths.get(source).toAbsolutePath().normalize();
+		if (!Files.isDirectory(sourcePath)) {
+			System.err.println("The specified folder is invalid or does not exist: "
+					+ source);
+			return 2;
+		}
+
+		OrganizerConfig config = OrganizerConfig.fromSystemProperties();
+		TAGGER_LOGGER.setLevel(Level.SEVERE);
+		JsonLinesReport report = null;
+		CountDownLatch finished = new CountDownLatch(1);
+		try {
+			Writer out;
+			if (reportFile == null) {
+				out = new BufferedWriter(new OutputStreamWriter(System.out,
+						StandardCharsets.UTF_8));
+			} else {
+				out = Files.newBufferedWriter(Paths.get(reportFile),
+						StandardCharsets.UTF_8);
+			}
+			report = new JsonLinesReport(out, System.err);
+
+			// Traverse the source, and wait for every file to be migrated
+			MusicFileList musicFileList = new MusicFileList(Paths
+					.get(destination).toAbsolutePath().normalize().toString(),
+					report, config);
+			musicFileList.initializeErrors();
+			if (watch) {
+				watch(musicFileList, sourcePath, config, finished);
+				return 0;
+			}
+			musicFileList.startMigration();
+			try {
+				musicFileList.walk(sourcePath);
+			} finally {
+				musicFileList.awaitMigration();
+			}
+			musicFileList.reportSummary();
+			return 0;
+		} catch (IOException | InterruptedException e) {
+			System.err.println(e.toString());
+			return 1;
+		} finally {
+			if (report != null) {
+				try {
+					report.close();
+				} catch (IOException e) {
+					System.err.println(e.toString());
+				}
+			}
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Watch a drop folder until the process is stopped. Stopping the process
+	 * lets the batch being migrated finish, and the report close, first.
+	 * 
+	 * @param musicFileList
+	 *            migrates the settled files
+	 * @param sourcePath
+	 *            the drop folder
+	 * @param config
+	 *            settings for the migration
+	 * @param finished
+	 *            released once the report is closed
+	 * @throws IOException
+	 *             if the folder cannot be watched
+	 * @throws InterruptedException
+	 *             if interrupted while migrating a batch
+	 */
+	private static void watch(MusicFileList musicFileList, Path sourcePath,
+			OrganizerConfig config, CountDownLatch finished)
+			throws IOException, InterruptedException {
+		WatchFolder watchFolder = new WatchFolder(musicFileList,
+				musicFileList.getOutputPath(), config);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			watchFolder.stop();
+			try {
+				finished.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		watchFolder.watch(sourcePath);
+		musicFileList.reportSummary();
+	}
+
+}
@@ -0,0 +1,312 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CopyScheduler class. Sits between tag parsing and the copy of each music
+ * file, and decides when each copy runs. Pending copies are grouped into lanes
+ * by the drive they read from and the drive they write to, and every drive
+ * has its own limit on the copies using it at once, so one run can keep
+ * several drives busy without thrashing any one of them. Within a lane the
+ * copies run in path order, so the files of a source folder are read one
+ * after another. A full scheduler blocks the thread scheduling a copy.
+ */
+public class CopyScheduler {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Settings for the drive limits */
+	private final OrganizerConfig config;
+
+	/** The drive the output folder is on */
+	private final StorageDevice destination;
+
+	/** Maximum number of copies waiting for their drives */
+	private final int capacity;
+
+	/** Runs the copies, never more than the drive limits allow */
+	private final ExecutorService executor = Executors
+			.newCachedThreadPool(new MigrationPipeline.StageThreadFactory(
+					"copy"));
+
+	/** Drives found so far, by file store */
+	private final Map<FileStore, StorageDevice> devices = new ConcurrentHashMap<FileStore, StorageDevice>();
+
+	/** Drive of each source folder found so far */
+	private final Map<Path, StorageDevice> folderDevices = new ConcurrentHashMap<Path, StorageDevice>();
+
+	/** Drive of source folders whose file store cannot be read */
+	private final StorageDevice unknown;
+
+	/** Pending copies by source drive, guarded by this */
+	private final Map<StorageDevice, Lane> lanes = new HashMap<StorageDevice, Lane>();
+
+	/** Lanes in the order they are served, guarded by this */
+	private final List<Lane> laneOrder = new ArrayList<Lane>();
+
+	/** Number of copies waiting for their drives, guarded by this */
+	private int pending;
+
+	/** Number of copies running, guarded by this */
+	private int running;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new CopyScheduler for the files copied into an output folder
+	 *
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param config
+	 *            - the drive limits and the number of copies that may wait
+	 */
+	public CopyScheduler(String outputPath, OrganizerConfig config) {
+		this.config = config;
+		capacity = config.getQueueCapacity();
+		unknown = new StorageDevice("unknown", StorageDevice.Kind.UNKNOWN,
+				config);
+		StorageDevice output;
+		try {
+			output = device(StorageDevice.findFileStore(Paths.get(outputPath)));
+		} catch (IOException e) {
+			output = unknown;
+		}
+		destination = output;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Schedule the copy of a music file. Blocks while the scheduler is full.
+	 *
+	 * @param source
+	 *            - the source file, which decides its lane and order
+	 * @param copy
+	 *            - migrates the file
+	 */
+	public void schedule(Path source, Runnable copy) {
+		StorageDevice sourceDevice = sourceDevice(source);
+		synchronized (this) {
+			try {
+				while (pending >= capacity) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+			Lane lane = lanes.get(sourceDevice);
+			if (lane == null) {
+				lane = new Lane(sourceDevice, destination);
+				lanes.put(sourceDevice, lane);
+				laneOrder.add(lane);
+			}
+			lane.copies.add(new PendingCopy(source, copy));
+			pending++;
+			dispatch();
+		}
+	}
+
+	/**
+	 * Wait for every scheduled copy to finish, then stop the copy threads
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (this) {
+			while (pending > 0 || running > 0) {
+				wait();
+			}
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Return the drive the output folder is on
+	 *
+	 * @return the destination drive
+	 */
+	public StorageDevice getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Start as many pending copies as the drives allow, taking one from each
+	 * lane in turn so no lane starves another sharing its destination
+	 */
+	private void dispatch() {
+		boolean started = true;
+		while (started) {
+			started = false;
+			for (Lane lane : laneOrder) {
+				if (!lane.copies.isEmpty() && lane.hasCapacity()) {
+					PendingCopy copy = lane.copies.poll();
+					pending--;
+					running++;
+					lane.acquire();
+					executor.execute(() -> run(lane, copy));
+					started = true;
+				}
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Run a copy, then free its drives for the next one
+	 *
+	 * @param lane
+	 *            - the lane of the copy
+	 * @param copy
+	 *            - the copy
+	 */
+	private void run(Lane lane, PendingCopy copy) {
+		try {
+			copy.copy.run();
+		} finally {
+			synchronized (this) {
+				lane.release();
+				running--;
+				dispatch();
+			}
+		}
+	}
+
+	/**
+	 * Find the drive a source file is read from. The file store is looked up
+	 * once for each source folder.
+	 *
+	 * @param source
+	 *            - the source file
+	 * @return the drive, or the unknown drive if it cannot be found
+	 */
+	private StorageDevice sourceDevice(Path source) {
+		Path folder = source.toAbsolutePath().getParent();
+		if (folder == null) {
+			return unknown;
+		}
+		StorageDevice device = folderDevices.get(folder);
+		if (device == null) {
+			try {
+				device = device(Files.getFileStore(folder));
+			} catch (IOException e) {
+				device = unknown;
+			}
+			folderDevices.put(folder, device);
+		}
+		return device;
+	}
+
+	/**
+	 * Return the drive of a file store, detecting its kind the first time
+	 *
+	 * @param store
+	 *            - the file store
+	 * @return the drive
+	 */
+	private StorageDevice device(FileStore store) {
+		return devices.computeIfAbsent(store,
+				key -> new StorageDevice(key, config));
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class holding the copies waiting to read from one drive and
+	 * write to another, in path order.
+	 */
+	static class Lane {
+
+		/** The drive the copies read from */
+		final StorageDevice source;
+
+		/** The drive the copies write to */
+		final StorageDevice destination;
+
+		/** Pending copies, in source path order */
+		final PriorityQueue<PendingCopy> copies = new PriorityQueue<PendingCopy>();
+
+		Lane(StorageDevice source, StorageDevice destination) {
+			this.source = source;
+			this.destination = destination;
+		}
+
+		/**
+		 * Determine whether both drives can take another copy. A copy within
+		 * one drive counts once against its limit.
+		 *
+		 * @return true if another copy may start
+		 */
+		boolean hasCapacity() {
+			return source.active < source.getLimit()
+					&& destination.active < destination.getLimit();
+		}
+
+		/**
+		 * Count a started copy against both drives
+		 */
+		void acquire() {
+			source.active++;
+			if (destination != source) {
+				destination.active++;
+			}
+		}
+
+		/**
+		 * Give back the drives of a finished copy
+		 */
+		void release() {
+			source.active--;
+			if (destination != source) {
+				destination.active--;
+			}
+		}
+	}
+
+	/**
+	 * Inner class for a copy waiting for its drives, ordered by source path.
+	 */
+	static class PendingCopy implements Comparable<PendingCopy> {
+
+		/** The source file */
+		final Path source;
+
+		/** Migrates the file */
+		final Runnable copy;
+
+		PendingCopy(Path source, Runnable copy) {
+			this.source = source;
+			this.copy = copy;
+		}
+
+		@Override
+		public int compareTo(PendingCopy other) {
+			return source.compareTo(other.source);
+		}
+	}
+
+}
@@ -0,0 +1,257 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * DestinationIndex class. Every destination in the output tree, held in memory
+ * so a traversal can tell whether a destination is taken without asking the
+ * file system. The tree is scanned once when the traversal starts, and every
+ * destination the traversal assigns is claimed in the index before its file
+ * is copied. Destinations are compared by their path under the output folder
+ * in Unicode NFC form and lower case, so two songs whose titles differ only in
+ * letter case or normalization collide here, as they would on a case
+ * insensitive volume, instead of silently overwriting or splitting each other.
+ * Safe to use from any thread.
+ */
+public class DestinationIndex {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Depth of the song files below the output folder: artist, album, song */
+	private static final int SONG_DEPTH = 3;
+
+	/** Latch of the claims whose files are already in place */
+	private static final CountDownLatch SETTLED = new CountDownLatch(0);
+
+	/** The folder music is organized into */
+	private final Path outputRoot;
+
+	/** Claim of each destination, by folded path under the output folder */
+	private final ConcurrentMap<String, Claim> claims = new ConcurrentHashMap<String, Claim>();
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new, empty DestinationIndex
+	 *
+	 * @param outputPath
+	 *            - folder music is organized into
+	 */
+	public DestinationIndex(String outputPath) {
+		outputRoot = Paths.get(outputPath);
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Add the songs already in the output tree. Hidden files, such as the
+	 * scan index and unfinished copies, are left out.
+	 *
+	 * @param directories
+	 *            - also receives the artist and album folders found, or null
+	 * @throws IOException
+	 *             if the output tree cannot be listed
+	 */
+	public void preload(DirectoryCache directories) throws IOException {
+		if (!Files.isDirectory(outputRoot)) {
+			return;
+		}
+		Files.walkFileTree(outputRoot, EnumSet.noneOf(FileVisitOption.class),
+				SONG_DEPTH, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path path,
+							BasicFileAttributes attr) {
+						if (!path.equals(outputRoot) && isHidden(path)) {
+							return FileVisitResult.SKIP_SUBTREE;
+						}
+						if (directories != null) {
+							directories.remember(path);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path path,
+							BasicFileAttributes attr) {
+						// At the depth limit, folders are visited as files
+						if (!attr.isDirectory() && !isHidden(path)) {
+							claims.putIfAbsent(key(path), new Claim(path
+									.toString(), SETTLED));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path path,
+							IOException exc) {
+						System.out.println(exc.toString());
+						return FileVisitResult.CONTINUE;
+					}
+				});
+	}
+
+	/**
+	 * Claim a destination for the file about to be migrated to it. If another
+	 * file of this traversal holds the destination and is still being
+	 * migrated, waits until it is in place, or takes over the destination if
+	 * that migration fails.
+	 *
+	 * @param destination
+	 *            - the destination
+	 * @return null if the destination is now claimed by the caller, or else
+	 *         the path of the file holding it, which may differ from the
+	 *         destination in letter case or Unicode normalization
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for another migration
+	 */
+	public String claim(File destination) throws InterruptedException {
+		String key = key(destination.toPath());
+		Claim claim = new Claim(destination.getPath(), new CountDownLatch(1));
+		while (true) {
+			Claim holder = claims.putIfAbsent(key, claim);
+			if (holder == null) {
+				return null;
+			}
+			holder.settled.await();
+			if (holder.published) {
+				return holder.path;
+			}
+			// The other migration failed and gave up the destination
+		}
+	}
+
+	/**
+	 * Mark a claimed destination as in place, waking the files waiting for it
+	 *
+	 * @param destination
+	 *            - a destination claimed by the caller
+	 */
+	public void publish(File destination) {
+		Claim claim = claims.get(key(destination.toPath()));
+		if (claim != null && claim.path.equals(destination.getPath())) {
+			claim.published = true;
+			claim.settled.countDown();
+		}
+	}
+
+	/**
+	 * Give up a claimed destination whose migration failed, so the next file
+	 * waiting for it can take it
+	 *
+	 * @param destination
+	 *            - a destination claimed by the caller
+	 */
+	public void release(File destination) {
+		String key = key(destination.toPath());
+		Claim claim = claims.get(key);
+		if (claim != null && claim.path.equals(destination.getPath())
+				&& claims.remove(key, claim)) {
+			claim.settled.countDown();
+		}
+	}
+
+	/**
+	 * Determine whether a destination is taken, by a file already in the
+	 * output tree or by a claim of this traversal
+	 *
+	 * @param destination
+	 *            - the destination
+	 * @return true if the destination, or one that folds to the same key, is
+	 *         taken
+	 */
+	public boolean contains(File destination) {
+		return claims.containsKey(key(destination.toPath()));
+	}
+
+	/**
+	 * Return the number of destinations in the index
+	 *
+	 * @return number of destinations
+	 */
+	public int size() {
+		return claims.size();
+	}
+
+	/**
+	 * Fold the path of a destination under the output folder to its key:
+	 * Unicode NFC form, then lower case
+	 *
+	 * @param destination
+	 *            - a path in the output tree
+	 * @return the key of the destination
+	 */
+	private String key(Path destination) {
+		return fold(outputRoot.relativize(destination).toString());
+	}
+
+	/**
+	 * Fold a path, or a segment of one, the way destinations are compared:
+	 * Unicode NFC form, then lower case
+	 *
+	 * @param path
+	 *            - a path or path segment
+	 * @return the folded path
+	 */
+	static String fold(String path) {
+		return Normalizer.normalize(path, Normalizer.Form.NFC).toLowerCase(
+				Locale.ROOT);
+	}
+
+	/**
+	 * Determine whether a file or folder in the output tree is hidden
+	 *
+	 * @param path
+	 *            - the file or folder
+	 * @return true if its name starts with a dot
+	 */
+	private static boolean isHidden(Path path) {
+		return path.getFileName().toString().startsWith(".");
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class for the file holding a destination, settled once it is in
+	 * place or its migration has failed.
+	 */
+	static class Claim {
+
+		/** Path of the file holding the destination */
+		final String path;
+
+		/** Counted down once the claim is published or given up */
+		final CountDownLatch settled;
+
+		/** Set when the file is in place */
+		volatile boolean published;
+
+		Claim(String path, CountDownLatch settled) {
+			this.path = path;
+			this.settled = settled;
+			published = settled.getCount() == 0;
+		}
+	}
+
+}
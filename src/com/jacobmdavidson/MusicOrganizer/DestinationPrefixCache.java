@@ -0,0 +1,68 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DestinationPrefixCache class. Remembers the destination folder path built
+ * for each output folder, artist and album, so the thousands of tracks that
+ * share an album reuse one prefix string instead of each concatenating their
+ * own. Lookups are nested map reads by the cleaned strings themselves, so a
+ * cache hit allocates nothing. Safe to use from any thread.
+ */
+public class DestinationPrefixCache {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Number of prefixes after which the cache starts over */
+	private static final int MAX_PREFIXES = 100000;
+
+	/** Prefixes by output folder, then artist, then album title */
+	private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, String>>> prefixes = new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<String, String>>>();
+
+	/** Number of cached prefixes */
+	private final AtomicInteger size = new AtomicInteger();
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Return the destination folder path for an album, ending with a separator
+	 *
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param artist
+	 *            - cleaned artist
+	 * @param albumTitle
+	 *            - cleaned album title
+	 * @return outputPath/artist/albumTitle/
+	 */
+	public String get(String outputPath, String artist, String albumTitle) {
+		ConcurrentMap<String, String> albums = prefixes
+				.computeIfAbsent(outputPath,
+						key -> new ConcurrentHashMap<String, ConcurrentMap<String, String>>())
+				.computeIfAbsent(artist,
+						key -> new ConcurrentHashMap<String, String>());
+		String prefix = albums.get(albumTitle);
+		if (prefix == null) {
+			// Keep the memory bounded for long running processes
+			if (size.incrementAndGet() > MAX_PREFIXES) {
+				prefixes.clear();
+				size.set(1);
+			}
+			prefix = new StringBuilder(outputPath.length() + artist.length()
+					+ albumTitle.length() + 3).append(outputPath)
+					.append(File.separatorChar).append(artist)
+					.append(File.separatorChar).append(albumTitle)
+					.append(File.separatorChar).toString();
+			albums.put(albumTitle, prefix);
+		}
+		return prefix;
+	}
+
+}
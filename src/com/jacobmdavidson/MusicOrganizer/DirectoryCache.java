@@ -0,0 +1,97 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DirectoryCache class. Remembers the destination folders known to exist
+ * during a traversal, so each artist and album folder is checked and created
+ * once per traversal instead of once per track. On network file systems every
+ * check is a round trip. The cache can be preloaded with the folders already
+ * in the output tree. Safe to use from any thread.
+ */
+public class DirectoryCache {
+
+	/** Paths of the folders known to exist */
+	private final Set<String> knownDirectories = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Make sure a folder exists, creating it and any missing parents unless it
+	 * is already known to exist
+	 *
+	 * @param directory
+	 *            - folder that must exist
+	 * @throws IOException
+	 *             if the folder cannot be created
+	 */
+	public void ensureDirectory(File directory) throws IOException {
+		String path = directory.getPath();
+		if (!knownDirectories.contains(path)) {
+			Files.createDirectories(directory.toPath());
+			knownDirectories.add(path);
+		}
+	}
+
+	/**
+	 * Forget a folder, because it turned out to be missing
+	 *
+	 * @param directory
+	 *            - folder to forget
+	 */
+	public void forget(File directory) {
+		knownDirectories.remove(directory.getPath());
+	}
+
+	/**
+	 * Remember a folder found to exist
+	 *
+	 * @param directory
+	 *            - folder that exists
+	 */
+	void remember(Path directory) {
+		knownDirectories.add(directory.toString());
+	}
+
+	/**
+	 * Add the existing artist and album folders of the output tree
+	 *
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @throws IOException
+	 *             if the output tree cannot be listed
+	 */
+	public void preload(Path outputPath) throws IOException {
+		if (!Files.isDirectory(outputPath)) {
+			return;
+		}
+		Files.walkFileTree(outputPath, EnumSet.noneOf(FileVisitOption.class), 2,
+				new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path path,
+							BasicFileAttributes attr) {
+						// At the depth limit, folders are visited as files
+						if (attr.isDirectory()) {
+							knownDirectories.add(path.toString());
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult preVisitDirectory(Path path,
+							BasicFileAttributes attr) {
+						knownDirectories.add(path.toString());
+						return FileVisitResult.CONTINUE;
+					}
+				});
+	}
+
+}
@@ -2,8 +2,13 @@ package com.jacobmdavidson.MusicOrganizer;
 
 public class Driver {
 
-	// Load the GUI and register the model
+	// Load the GUI and register the model, or run from the command line if
+	// a source and destination were given
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			CommandLine.main(args);
+			return;
+		}
 		GUI gui = new GUI();
 		MusicOrganizer musicOrganizer = new MusicOrganizer(gui);
 		gui.registerModel(musicOrganizer);
@@ -0,0 +1,185 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DuplicateFinder class. Finds music files with byte-identical content,
+ * regardless of their tags. Candidates are grouped by size as they are
+ * discovered, and only files that share their size with another candidate are
+ * ever read and hashed, so most of a collection is never hashed at all. The
+ * hashing is spread over a pool of threads.
+ */
+public class DuplicateFinder {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Digest used to compare content. MD5 is fast, and collisions are not a
+	 * concern when only files of equal size are compared.
+	 */
+	private static final String DIGEST_ALGORITHM = "MD5";
+
+	/** Size of the buffer each file is hashed through */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Candidate files, grouped by size */
+	private Map<Long, Queue<Path>> candidatesBySize = new ConcurrentHashMap<Long, Queue<Path>>();
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Add a music file to the candidates. Safe to call from any thread.
+	 *
+	 * @param path
+	 *            - the music file
+	 * @param size
+	 *            - size of the file in bytes
+	 */
+	public void addCandidate(Path path, long size) {
+		candidatesBySize.computeIfAbsent(size,
+				key -> new ConcurrentLinkedQueue<Path>()).add(path);
+	}
+
+	/**
+	 * Follow a candidate that was moved, so it is hashed at its new path. Safe
+	 * to call from any thread.
+	 *
+	 * @param path
+	 *            - where the music file was added from
+	 * @param newPath
+	 *            - where the music file is now
+	 * @param size
+	 *            - size of the file in bytes
+	 */
+	public void moveCandidate(Path path, Path newPath, long size) {
+		Queue<Path> bucket = candidatesBySize.get(size);
+		if (bucket != null && bucket.remove(path)) {
+			bucket.add(newPath);
+		}
+	}
+
+	/**
+	 * Hash every candidate that shares its size with another candidate, and
+	 * group the candidates with identical content
+	 *
+	 * @param threads
+	 *            - number of threads hashing files
+	 * @return groups of two or more files with identical content
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the hashes
+	 */
+	public List<List<Path>> findDuplicates(int threads)
+			throws InterruptedException {
+		ExecutorService hashExecutor = Executors.newFixedThreadPool(threads,
+				new MigrationPipeline.StageThreadFactory("hash"));
+		try {
+			// Start hashing every file in a bucket of two or more
+			Map<Path, Future<String>> hashes = new HashMap<Path, Future<String>>();
+			for (Queue<Path> bucket : candidatesBySize.values()) {
+				if (bucket.size() > 1) {
+					for (Path path : bucket) {
+						hashes.put(path, hashExecutor.submit(() -> hash(path)));
+					}
+				}
+			}
+
+			// Group the files of each bucket by their hash
+			List<List<Path>> duplicates = new ArrayList<List<Path>>();
+			for (Queue<Path> bucket : candidatesBySize.values()) {
+				if (bucket.size() < 2) {
+					continue;
+				}
+				Map<String, List<Path>> byHash = new HashMap<String, List<Path>>();
+				for (Path path : bucket) {
+					String hash = getHash(hashes.get(path), path);
+					if (hash != null) {
+						byHash.computeIfAbsent(hash,
+								key -> new ArrayList<Path>()).add(path);
+					}
+				}
+				for (List<Path> group : byHash.values()) {
+					if (group.size() > 1) {
+						duplicates.add(group);
+					}
+				}
+			}
+			return duplicates;
+		} finally {
+			hashExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Clear the candidates before the next traversal
+	 */
+	public void clear() {
+		candidatesBySize.clear();
+	}
+
+	/**
+	 * Wait for the hash of a file
+	 *
+	 * @param hash
+	 *            - pending hash
+	 * @param path
+	 *            - file being hashed
+	 * @return the hash, or null if the file could not be read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private static String getHash(Future<String> hash, Path path)
+			throws InterruptedException {
+		try {
+			return hash.get();
+		} catch (ExecutionException e) {
+			System.out.println("Cannot hash " + path + ": "
+					+ e.getCause().toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Hash the content of a file, streaming it through a fixed size buffer
+	 *
+	 * @param path
+	 *            - file to hash
+	 * @return the hash, as a hexadecimal string
+	 * @throws IOException
+	 *             if the file cannot be read
+	 * @throws NoSuchAlgorithmException
+	 *             if the digest is not available
+	 */
+	static String hash(Path path) throws IOException, NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(path)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return String.format("%032x", new BigInteger(1, digest.digest()));
+	}
+
+}
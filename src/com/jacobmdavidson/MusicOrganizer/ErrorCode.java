@@ -0,0 +1,57 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * The reasons a music file cannot be migrated. Each code carries the message
+ * shown for it, so an error can be stored as a code and two paths, and its
+ * message rebuilt only when it is displayed.
+ */
+public enum ErrorCode {
+
+	/** The file does not have a supported music file extension */
+	NOT_MUSIC_FILE("not a valid music file."),
+
+	/** The tags could not be read */
+	UNREADABLE_TAGS("unidentified error."),
+
+	/** The artist, album or song title tag is missing, or empty once cleaned */
+	INVALID_TAGS("does not have valid tags for migration."),
+
+	/**
+	 * A file of the same size, and identical content when duplicates are
+	 * looked for, already exists at the destination
+	 */
+	DUPLICATE("duplicate file. Cannot migrate %1$s."),
+
+	/** A different file already exists at the destination */
+	TAG_COLLISION("a different recording with the same tags already exists at %2$s."),
+
+	/** The file could not be placed at the destination */
+	TRANSFER_FAILED("could not be transferred to %2$s."),
+
+	/** A moved file was copied to the destination, but the source remains */
+	SOURCE_NOT_REMOVED("was copied to %2$s, but could not be removed."),
+
+	/** The copy read back did not match the bytes read from the source */
+	VERIFICATION_FAILED("the copy at %2$s does not match the source.");
+
+	/** Message template, %1$s is the source and %2$s the destination */
+	private final String template;
+
+	ErrorCode(String template) {
+		this.template = template;
+	}
+
+	/**
+	 * Build the message for this code
+	 *
+	 * @param source
+	 *            - absolute path of the source file
+	 * @param destination
+	 *            - path of the destination file, or an empty string
+	 * @return the error message
+	 */
+	public String describe(String source, String destination) {
+		return String.format(template, source, destination);
+	}
+
+}
@@ -0,0 +1,254 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ErrorLog class. Streams the errors of a traversal to a log file as they
+ * happen, one line per error holding the error code, the source path and the
+ * destination path, separated by tabs. Only the most recent errors are kept in
+ * memory, in a ring buffer, so the heap used by the errors does not grow with
+ * their number. When the log file reaches its size limit it is rolled over,
+ * keeping a fixed number of older files.
+ */
+public class ErrorLog {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Number of rolled over log files kept next to the current one */
+	private static final int ROLLED_FILES = 2;
+
+	/** Separates the fields of a log line */
+	private static final char SEPARATOR = '\t';
+
+	/** The current log file */
+	private Path logFile;
+
+	/** Size at which the log file is rolled over, in characters */
+	private long maxLength;
+
+	/** Writes to the current log file, or null if the log is not open */
+	private Writer out;
+
+	/** Characters written to the current log file */
+	private long length;
+
+	/** The most recent errors, oldest first starting at next once full */
+	private Entry[] recent;
+
+	/** Position in the ring buffer of the next error */
+	private int next;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new ErrorLog
+	 *
+	 * @param logFile
+	 *            - file the errors are streamed to
+	 * @param maxLength
+	 *            - size at which the log file is rolled over, in characters
+	 * @param recentErrors
+	 *            - number of recent errors kept in memory
+	 */
+	public ErrorLog(Path logFile, long maxLength, int recentErrors) {
+		this.logFile = logFile;
+		this.maxLength = maxLength;
+		recent = new Entry[recentErrors];
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Start a new log file, rolling over the log of the previous traversal.
+	 * If the log cannot be opened the recent errors are still kept in memory.
+	 *
+	 * @throws IOException
+	 *             if the log file cannot be created
+	 */
+	public synchronized void open() throws IOException {
+		next = 0;
+		Arrays.fill(recent, null);
+		Files.createDirectories(logFile.getParent());
+		roll();
+	}
+
+	/**
+	 * Record an error. Safe to call from any thread.
+	 *
+	 * @param code
+	 *            - reason the file cannot be migrated
+	 * @param source
+	 *            - absolute path of the source file
+	 * @param destination
+	 *            - path of the destination file, or an empty string
+	 */
+	public synchronized void record(ErrorCode code, String source,
+			String destination) {
+		if (recent.length > 0) {
+			recent[next] = new Entry(code, source, destination);
+			next = (next + 1) % recent.length;
+		}
+		if (out == null) {
+			return;
+		}
+		try {
+			if (length >= maxLength) {
+				roll();
+			}
+			String line = code.name() + SEPARATOR + source + SEPARATOR
+					+ destination + System.lineSeparator();
+			out.write(line);
+			length += line.length();
+		} catch (IOException e) {
+			// Keep the recent errors in memory, but stop writing to a broken log
+			System.out.println("Cannot write " + logFile + ": " + e.toString());
+			closeQuietly();
+		}
+	}
+
+	/**
+	 * Return the messages of the most recent errors, oldest first
+	 *
+	 * @return the recent error messages
+	 */
+	public synchronized List<String> getRecentErrors() {
+		List<String> messages = new ArrayList<String>();
+		for (int i = 0; i < recent.length; i++) {
+			Entry entry = recent[(next + i) % recent.length];
+			if (entry != null) {
+				messages.add(entry.toString());
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Return the current log file
+	 *
+	 * @return the log file
+	 */
+	public Path getLogFile() {
+		return logFile;
+	}
+
+	/**
+	 * Write the buffered errors to the log file, keeping it open
+	 *
+	 * @throws IOException
+	 *             if the log cannot be flushed
+	 */
+	public synchronized void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Flush and close the log file. The recent errors remain available.
+	 *
+	 * @throws IOException
+	 *             if the log cannot be flushed
+	 */
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			try {
+				out.close();
+			} finally {
+				out = null;
+			}
+		}
+	}
+
+	/**
+	 * Close the log file, ignoring any error
+	 */
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			// The log is already broken
+		}
+	}
+
+	/**
+	 * Close the current log file, shift the rolled over files by one, dropping
+	 * the oldest, and start an empty log file
+	 *
+	 * @throws IOException
+	 *             if the files cannot be moved or created
+	 */
+	private void roll() throws IOException {
+		close();
+		Files.deleteIfExists(rolledFile(ROLLED_FILES));
+		for (int i = ROLLED_FILES - 1; i > 0; i--) {
+			if (Files.exists(rolledFile(i))) {
+				Files.move(rolledFile(i), rolledFile(i + 1),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		if (Files.exists(logFile)) {
+			Files.move(logFile, rolledFile(1),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		out = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8);
+		length = 0;
+	}
+
+	/**
+	 * Return the path of a rolled over log file
+	 *
+	 * @param generation
+	 *            - 1 for the most recently rolled over file
+	 * @return the path of the rolled over file
+	 */
+	private Path rolledFile(int generation) {
+		return logFile.resolveSibling(logFile.getFileName() + "."
+				+ generation);
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class holding one recent error. The message is only built when
+	 * the error is displayed.
+	 */
+	static class Entry {
+
+		/** Reason the file cannot be migrated */
+		private final ErrorCode code;
+
+		/** Absolute path of the source file */
+		private final String source;
+
+		/** Path of the destination file, or an empty string */
+		private final String destination;
+
+		Entry(ErrorCode code, String source, String destination) {
+			this.code = code;
+			this.source = source;
+			this.destination = destination;
+		}
+
+		@Override
+		public String toString() {
+			return "Error: " + source + " " + code.describe(source, destination);
+		}
+	}
+
+}
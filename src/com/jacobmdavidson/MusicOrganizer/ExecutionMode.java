@@ -0,0 +1,39 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * The ways a traversal can run the migration of the files it discovers.
+ */
+public enum ExecutionMode {
+
+	/** Parse and migrate each file on the walking thread */
+	SEQUENTIAL,
+
+	/** Separate bounded thread pools for tag parsing and copying */
+	PIPELINE,
+
+	/** One lightweight task per file, limited by a semaphore */
+	VIRTUAL_THREADS;
+
+	/**
+	 * Create the executor for this mode
+	 *
+	 * @param musicFileList
+	 *            - receives the result of every migration attempt
+	 * @param config
+	 *            - settings for the executor
+	 * @return a new executor, ready to accept files
+	 */
+	public MigrationExecutor createExecutor(MusicFileList musicFileList,
+			OrganizerConfig config) {
+		switch (this) {
+		case SEQUENTIAL:
+			return new SequentialExecutor(musicFileList);
+		case VIRTUAL_THREADS:
+			return new VirtualThreadExecutor(musicFileList,
+					config.getMaxInFlight());
+		default:
+			return new MigrationPipeline(musicFileList, config);
+		}
+	}
+
+}
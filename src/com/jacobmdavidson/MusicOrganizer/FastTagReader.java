@@ -0,0 +1,714 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.FilenameUtils;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+
+/**
+ * FastTagReader class. Reads the album artist, artist, album and song title
+ * of a music file without building a Jaudiotagger AudioFile. For mp3 files
+ * only the ID3v2 header and the four text frames are read. For MPEG-4 files
+ * (m4a, m4p, m4b and mp4) only the box headers on the way to
+ * moov/udta/meta/ilst and the four text items are read. The start of the file is read in one block, and
+ * anything beyond it with small positioned reads, so embedded artwork and the
+ * audio are skipped rather than read. The start of the file can also be read
+ * ahead of time by another thread, in which case the file is only opened if
+ * the tags reach past it. Files this reader does not understand, such as
+ * flac and ogg files, mp3 files with only an ID3v1 tag, or unsynchronised and
+ * compressed frames, are left to Jaudiotagger.
+ */
+public class FastTagReader {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Bytes read from the start of the file in the first read */
+	static final int HEAD_SIZE = 8 * 1024;
+
+	/** Largest text frame or item read, larger ones are left to Jaudiotagger */
+	private static final int MAX_TEXT_SIZE = 64 * 1024;
+
+	/** ID3v2.3 and ID3v2.4 frames of the album artist, artist, album, title */
+	private static final String[] ID3V23_FRAMES = { "TPE2", "TPE1", "TALB",
+			"TIT2" };
+
+	/** ID3v2.2 frames of the album artist, artist, album and title */
+	private static final String[] ID3V22_FRAMES = { "TP2", "TP1", "TAL", "TT2" };
+
+	/** ilst items holding the album artist, artist, album and title */
+	private static final int[] MP4_ITEMS = { fourCC("aART"),
+			fourCC("\u00A9ART"), fourCC("\u00A9alb"), fourCC("\u00A9nam") };
+
+	/** Movie box, holding the metadata of an MPEG-4 file */
+	private static final int MOOV = fourCC("moov");
+
+	/** User data box, inside moov */
+	private static final int UDTA = fourCC("udta");
+
+	/** Metadata box, inside udta */
+	private static final int META = fourCC("meta");
+
+	/** iTunes item list box, inside meta */
+	private static final int ILST = fourCC("ilst");
+
+	/** Value box, inside each ilst item */
+	private static final int DATA = fourCC("data");
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Read the tags of a music file, falling back to Jaudiotagger for files
+	 * this reader does not understand
+	 *
+	 * @param file
+	 *            - the music file
+	 * @return the tags
+	 * @throws Exception
+	 *             if the file cannot be read by either reader
+	 */
+	public static Tags readTags(File file) throws Exception {
+		return readTags(file, null);
+	}
+
+	/**
+	 * Read the tags of a music file whose start may already have been read,
+	 * falling back to Jaudiotagger for files this reader does not understand
+	 *
+	 * @param file
+	 *            - the music file
+	 * @param head
+	 *            - the start of the file read ahead of time, or null
+	 * @return the tags
+	 * @throws Exception
+	 *             if the file cannot be read by either reader
+	 */
+	public static Tags readTags(File file, Head head) throws Exception {
+		Tags tags = read(file, head);
+		if (tags == null) {
+			AudioFile audioFile = AudioFileIO.read(file);
+			tags = Tags.of(audioFile.getTag());
+
+			// An ID3v2 tag without text frames hides the ID3v1 tag
+			if (tags.isEmpty() && audioFile instanceof MP3File
+					&& ((MP3File) audioFile).hasID3v1Tag()) {
+				tags = Tags.of(((MP3File) audioFile).getID3v1Tag());
+			}
+		}
+		return tags;
+	}
+
+	/**
+	 * Read the tags of a music file
+	 *
+	 * @param file
+	 *            - the music file
+	 * @return the tags, or null if this reader cannot handle the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static Tags read(File file) throws IOException {
+		return read(file, null);
+	}
+
+	/**
+	 * Read the tags of a music file whose start may already have been read
+	 *
+	 * @param file
+	 *            - the music file
+	 * @param head
+	 *            - the start of the file read ahead of time, or null
+	 * @return the tags, or null if this reader cannot handle the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static Tags read(File file, Head head) throws IOException {
+		String extension = FilenameUtils.getExtension(file.getName());
+		try (Source source = new Source(file.toPath(), head)) {
+			if (extension.equals("mp3")) {
+				return readId3v2(source);
+			} else if (extension.equals("m4a") || extension.equals("m4p")
+					|| extension.equals("m4b") || extension.equals("mp4")) {
+				return readMp4(source);
+			}
+			return null;
+		} catch (EOFException e) {
+			// Truncated structure, let Jaudiotagger decide
+			return null;
+		}
+	}
+
+	/**
+	 * Read the start of a file, ahead of reading its tags
+	 *
+	 * @param file
+	 *            - the music file
+	 * @param length
+	 *            - number of bytes to read, fewer if the file is shorter
+	 * @return the start of the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static Head readHead(Path file, int length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			return new Head(Source.read(channel, 0,
+					(int) Math.min(length, size)), size);
+		}
+	}
+
+	/**
+	 * Read the text frames of an ID3v2.2, ID3v2.3 or ID3v2.4 tag at the start
+	 * of the file
+	 *
+	 * @param source
+	 *            - the file
+	 * @return the tags, or null if there is no tag this reader can handle, or
+	 *         the tag has none of the text frames, so Jaudiotagger can look
+	 *         for an ID3v1 tag
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static Tags readId3v2(Source source) throws IOException {
+		if (source.size() < 10) {
+			return null;
+		}
+		byte[] header = source.read(0, 10);
+		if (header[0] != 'I' || header[1] != 'D' || header[2] != '3') {
+			return null;
+		}
+		int version = header[3];
+		int flags = header[5];
+		int tagSize = syncsafe(header, 6);
+
+		// Unsynchronised tags, and compressed ID3v2.2 tags, need Jaudiotagger
+		if (version < 2 || version > 4 || tagSize < 0 || (flags & 0x80) != 0
+				|| (version == 2 && (flags & 0x40) != 0)) {
+			return null;
+		}
+		long position = 10;
+		long end = Math.min(10L + tagSize, source.size());
+
+		// Skip the extended header
+		if ((flags & 0x40) != 0) {
+			byte[] extended = source.read(position, 4);
+			long extendedSize = version == 3 ? 4L + readInt(extended, 0)
+					: syncsafe(extended, 0);
+			if (extendedSize < 4) {
+				return null;
+			}
+			position += extendedSize;
+		}
+
+		String[] frameIds = version == 2 ? ID3V22_FRAMES : ID3V23_FRAMES;
+		int headerSize = version == 2 ? 6 : 10;
+		String[] values = new String[frameIds.length];
+		int found = 0;
+		while (position + headerSize <= end && found < values.length) {
+			byte[] frameHeader = source.read(position, headerSize);
+
+			// Padding fills the rest of the tag
+			if (frameHeader[0] == 0) {
+				break;
+			}
+			String id = new String(frameHeader, 0, version == 2 ? 3 : 4,
+					StandardCharsets.ISO_8859_1);
+			int frameSize;
+			int frameFlags = 0;
+			if (version == 2) {
+				frameSize = ((frameHeader[3] & 0xFF) << 16)
+						| ((frameHeader[4] & 0xFF) << 8)
+						| (frameHeader[5] & 0xFF);
+			} else {
+				frameSize = version == 3 ? readInt(frameHeader, 4)
+						: syncsafe(frameHeader, 4);
+				frameFlags = frameHeader[9] & 0xFF;
+			}
+			if (frameSize < 0 || position + headerSize + frameSize > end) {
+				return null;
+			}
+			int index = indexOf(frameIds, id);
+			if (index >= 0 && values[index] == null) {
+				// Compressed, encrypted, grouped or unsynchronised frames
+				// need Jaudiotagger
+				if (frameFlags != 0 || frameSize > MAX_TEXT_SIZE) {
+					return null;
+				}
+				values[index] = decodeId3Text(source.read(position
+						+ headerSize, frameSize));
+				if (values[index] == null) {
+					return null;
+				}
+				found++;
+			}
+			position += headerSize + frameSize;
+		}
+		return found > 0 ? new Tags(values) : null;
+	}
+
+	/**
+	 * Decode the first value of an ID3v2 text frame
+	 *
+	 * @param body
+	 *            - the frame body, starting with the encoding byte
+	 * @return the first value, or null for an unknown encoding
+	 */
+	private static String decodeId3Text(byte[] body) {
+		if (body.length == 0) {
+			return "";
+		}
+		Charset charset;
+		boolean wide;
+		switch (body[0]) {
+		case 0:
+			charset = StandardCharsets.ISO_8859_1;
+			wide = false;
+			break;
+		case 1:
+			// Without a byte order mark the byte order is a guess
+			if (body.length > 2 && !isByteOrderMark(body[1], body[2])) {
+				return null;
+			}
+			charset = StandardCharsets.UTF_16;
+			wide = true;
+			break;
+		case 2:
+			charset = StandardCharsets.UTF_16BE;
+			wide = true;
+			break;
+		case 3:
+			charset = StandardCharsets.UTF_8;
+			wide = false;
+			break;
+		default:
+			return null;
+		}
+
+		// Values are separated, and may be ended, by a null character
+		int length = body.length - 1;
+		if (wide) {
+			for (int i = 1; i + 1 < body.length; i += 2) {
+				if (body[i] == 0 && body[i + 1] == 0) {
+					length = i - 1;
+					break;
+				}
+			}
+		} else {
+			for (int i = 1; i < body.length; i++) {
+				if (body[i] == 0) {
+					length = i - 1;
+					break;
+				}
+			}
+		}
+		return new String(body, 1, length, charset);
+	}
+
+	/**
+	 * Determine whether two bytes are a UTF-16 byte order mark
+	 */
+	private static boolean isByteOrderMark(byte first, byte second) {
+		return (first == (byte) 0xFE && second == (byte) 0xFF)
+				|| (first == (byte) 0xFF && second == (byte) 0xFE);
+	}
+
+	/**
+	 * Read the text items of the ilst box of an MPEG-4 file
+	 *
+	 * @param source
+	 *            - the file
+	 * @return the tags, or null if there is no ilst box this reader can
+	 *         handle, or it holds none of the text items
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static Tags readMp4(Source source) throws IOException {
+		long[] box = findBox(source, 0, source.size(), MOOV);
+		if (box != null) {
+			box = findBox(source, box[0], box[1], UDTA);
+		}
+		if (box != null) {
+			box = findBox(source, box[0], box[1], META);
+		}
+		if (box == null || box[1] - box[0] < 4) {
+			return null;
+		}
+
+		// meta is a full box in MPEG-4 files, but a plain box in QuickTime
+		// files, where its first child starts right away
+		long metaStart = box[0];
+		if (readInt(source.read(metaStart, 4), 0) == 0) {
+			metaStart += 4;
+		}
+		long[] ilst = findBox(source, metaStart, box[1], ILST);
+		if (ilst == null) {
+			return null;
+		}
+
+		String[] values = new String[MP4_ITEMS.length];
+		int found = 0;
+		long position = ilst[0];
+		while (position + 8 <= ilst[1]) {
+			long[] item = boxAt(source, position, ilst[1]);
+			if (item == null) {
+				return null;
+			}
+			int index = indexOf(MP4_ITEMS, item[2]);
+			if (index >= 0 && values[index] == null) {
+				values[index] = readMp4Text(source, item[0], item[1]);
+				if (values[index] == null) {
+					return null;
+				}
+				found++;
+			}
+			position = item[1];
+		}
+		return found > 0 ? new Tags(values) : null;
+	}
+
+	/**
+	 * Read the text of the first data box of an ilst item
+	 *
+	 * @param source
+	 *            - the file
+	 * @param start
+	 *            - start of the content of the item
+	 * @param end
+	 *            - end of the item
+	 * @return the text, or null if it is not text this reader can handle
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static String readMp4Text(Source source, long start, long end)
+			throws IOException {
+		long[] data = findBox(source, start, end, DATA);
+		if (data == null || data[1] - data[0] < 8
+				|| data[1] - data[0] > MAX_TEXT_SIZE) {
+			return null;
+		}
+		byte[] content = source.read(data[0], (int) (data[1] - data[0]));
+
+		// Four bytes of version and type, then four bytes of locale
+		int type = readInt(content, 0) & 0xFFFFFF;
+		if (type == 1) {
+			return new String(content, 8, content.length - 8,
+					StandardCharsets.UTF_8);
+		} else if (type == 2) {
+			return new String(content, 8, content.length - 8,
+					StandardCharsets.UTF_16BE);
+		}
+		return null;
+	}
+
+	/**
+	 * Find the first box of a type between two positions
+	 *
+	 * @param source
+	 *            - the file
+	 * @param start
+	 *            - position of the first box
+	 * @param end
+	 *            - position the boxes end at
+	 * @param type
+	 *            - box type to find
+	 * @return the start and end of the content of the box, or null if there
+	 *         is no such box or the boxes are malformed
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static long[] findBox(Source source, long start, long end,
+			int type) throws IOException {
+		long position = start;
+		while (position + 8 <= end) {
+			long[] box = boxAt(source, position, end);
+			if (box == null) {
+				return null;
+			}
+			if (box[2] == type) {
+				return box;
+			}
+			position = box[1];
+		}
+		return null;
+	}
+
+	/**
+	 * Read the header of the box at a position
+	 *
+	 * @param source
+	 *            - the file
+	 * @param position
+	 *            - position of the box
+	 * @param end
+	 *            - position the enclosing box ends at
+	 * @return the start and end of the content of the box, and its type, or
+	 *         null if the box is malformed
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static long[] boxAt(Source source, long position, long end)
+			throws IOException {
+		byte[] header = source.read(position, 8);
+		long size = readInt(header, 0) & 0xFFFFFFFFL;
+		int type = readInt(header, 4);
+		long contentStart = position + 8;
+		if (size == 1) {
+			size = ByteBuffer.wrap(source.read(contentStart, 8)).getLong();
+			contentStart += 8;
+		} else if (size == 0) {
+			size = end - position;
+		}
+		if (size < contentStart - position || position + size > end) {
+			return null;
+		}
+		return new long[] { contentStart, position + size, type };
+	}
+
+	/**
+	 * Pack a four character box type into an int
+	 *
+	 * @param type
+	 *            - the box type, one byte per character
+	 * @return the packed type
+	 */
+	private static int fourCC(String type) {
+		return ByteBuffer.wrap(type.getBytes(StandardCharsets.ISO_8859_1))
+				.getInt();
+	}
+
+	/**
+	 * Read a big endian 32 bit integer
+	 */
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24)
+				| ((bytes[offset + 1] & 0xFF) << 16)
+				| ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Read a 28 bit syncsafe integer
+	 *
+	 * @return the integer, or -1 if a byte has its high bit set
+	 */
+	private static int syncsafe(byte[] bytes, int offset) {
+		int value = 0;
+		for (int i = offset; i < offset + 4; i++) {
+			if ((bytes[i] & 0x80) != 0) {
+				return -1;
+			}
+			value = (value << 7) | bytes[i];
+		}
+		return value;
+	}
+
+	/**
+	 * Return the position of a frame id in a list, or -1
+	 */
+	private static int indexOf(String[] ids, String id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i].equals(id)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the position of a box type in a list, or -1
+	 */
+	private static int indexOf(int[] types, long type) {
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == type) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class holding the four tags a music file is organized by. Missing
+	 * tags are empty strings, as with Jaudiotagger.
+	 */
+	public static class Tags {
+
+		/** Album artist, artist, album and title */
+		private final String[] values;
+
+		Tags(String... values) {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					values[i] = "";
+				}
+			}
+			this.values = values;
+		}
+
+		/**
+		 * Copy the tags from a Jaudiotagger tag
+		 *
+		 * @param tag
+		 *            - the tag read by Jaudiotagger
+		 * @return the tags
+		 */
+		static Tags of(Tag tag) {
+			return new Tags(tag.getFirst(FieldKey.ALBUM_ARTIST),
+					tag.getFirst(FieldKey.ARTIST), tag.getFirst(FieldKey.ALBUM),
+					tag.getFirst(FieldKey.TITLE));
+		}
+
+		public String getAlbumArtist() {
+			return values[0];
+		}
+
+		public String getArtist() {
+			return values[1];
+		}
+
+		public String getAlbum() {
+			return values[2];
+		}
+
+		public String getTitle() {
+			return values[3];
+		}
+
+		/**
+		 * Determine whether every tag is empty
+		 *
+		 * @return true if no tag has a value
+		 */
+		boolean isEmpty() {
+			for (String value : values) {
+				if (!value.isEmpty()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Inner class holding the start of a file, read ahead of its tags.
+	 */
+	public static class Head {
+
+		/** The first bytes of the file */
+		private final byte[] bytes;
+
+		/** Size of the whole file when its start was read */
+		private final long size;
+
+		Head(byte[] bytes, long size) {
+			this.bytes = bytes;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Inner class serving reads from the block at the start of the file, and
+	 * from positioned reads of the channel beyond it. When the start was read
+	 * ahead of time, the file is only opened for a read beyond it.
+	 */
+	static class Source implements Closeable {
+
+		/** The file */
+		private final Path path;
+
+		/** The open file, or null until a read needs it */
+		private FileChannel channel;
+
+		/** Size of the file */
+		private final long size;
+
+		/** The start of the file */
+		private final byte[] head;
+
+		Source(Path path, Head prefetched) throws IOException {
+			this.path = path;
+			if (prefetched == null) {
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+				try {
+					size = channel.size();
+					head = read(channel, 0, (int) Math.min(HEAD_SIZE, size));
+				} catch (IOException e) {
+					channel.close();
+					throw e;
+				}
+			} else {
+				size = prefetched.size;
+				head = prefetched.bytes;
+			}
+		}
+
+		long size() {
+			return size;
+		}
+
+		/**
+		 * Read bytes of the file
+		 *
+		 * @param position
+		 *            - position of the first byte
+		 * @param length
+		 *            - number of bytes
+		 * @return the bytes
+		 * @throws IOException
+		 *             if the bytes are past the end of the file, or cannot be
+		 *             read
+		 */
+		byte[] read(long position, int length) throws IOException {
+			if (position + length <= head.length) {
+				byte[] bytes = new byte[length];
+				System.arraycopy(head, (int) position, bytes, 0, length);
+				return bytes;
+			}
+			if (channel == null) {
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+			}
+			return read(channel, position, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+
+		/**
+		 * Read bytes of a channel with positioned reads
+		 */
+		private static byte[] read(FileChannel channel, long position,
+				int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new EOFException();
+				}
+			}
+			return buffer.array();
+		}
+	}
+
+}
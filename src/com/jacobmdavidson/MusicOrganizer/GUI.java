@@ -3,12 +3,17 @@ package com.jacobmdavidson.MusicOrganizer;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.FlowLayout;
+import java.awt.FontMetrics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
@@ -20,10 +25,10 @@ import javax.swing.JTable;
 import javax.swing.SwingConstants;
 import javax.swing.UIManager;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 
-public class GUI extends JFrame implements ComponentListener {
+public class GUI extends JFrame implements ComponentListener,
+		MigrationListener {
 
 	private static final long serialVersionUID = 1L;
 
@@ -49,7 +54,7 @@ public class GUI extends JFrame implements ComponentListener {
 	 * Underlying model for the JTable that displays contents of selected
 	 * directory
 	 */
-	private DefaultTableModel tableModel;
+	private ResultsTableModel tableModel;
 
 	/** Table that display migration results output */
 	private JTable outputResultsTable;
@@ -153,10 +158,8 @@ public class GUI extends JFrame implements ComponentListener {
 	 */
 	private void createOutputTable() {
 		// create underlying model for table that displays results output
-		tableModel = new DefaultTableModel();
-
-		// table model has 1 column to display the results output
-		tableModel.addColumn("Output");
+		// the model has 1 column to display the results output
+		tableModel = new ResultsTableModel();
 
 		// create GUI table component
 		outputResultsTable = new JTable(tableModel);
@@ -235,21 +238,45 @@ public class GUI extends JFrame implements ComponentListener {
 	 * occupies a single row in the table.
 	 */
 	public void updateListing(String output) {
-		// add information in new row in table
-		tableModel.addRow(new String[] { " " + output });
-
-		// Resize the table based on the max row width
-		for (int rowNumber = 0; rowNumber < outputResultsTable.getRowCount(); rowNumber++) {
-			TableCellRenderer renderer = outputResultsTable.getCellRenderer(
-					rowNumber, 0);
-			Component comp = outputResultsTable.prepareRenderer(renderer,
-					rowNumber, 0);
-			tableWidth = Math.max(comp.getPreferredSize().width, tableWidth);
-			outputResultsTable.getColumnModel().getColumn(0)
-					.setMaxWidth(tableWidth);
-			outputResultsTable.getColumnModel().getColumn(0)
-					.setPreferredWidth(tableWidth);
+		updateListing(Collections.singletonList(output));
+	}
+
+	/**
+	 * Update the table with a batch of output information. Each String
+	 * occupies a single row in the table. Must be called on the event
+	 * dispatch thread.
+	 */
+	public void updateListing(List<String> outputs) {
+		if (outputs.isEmpty()) {
+			return;
 		}
+
+		// add information in new rows in table
+		int firstRow = tableModel.getRowCount();
+		List<String> rows = new ArrayList<String>(outputs.size());
+		for (String output : outputs) {
+			rows.add(" " + output);
+		}
+		tableModel.addRows(rows);
+
+		// Widen the table to fit the new rows only. The renderer of the first
+		// new row provides the font, and the width its borders add to the
+		// text, so the other rows only need their text measured.
+		TableCellRenderer renderer = outputResultsTable.getCellRenderer(
+				firstRow, 0);
+		Component comp = outputResultsTable.prepareRenderer(renderer,
+				firstRow, 0);
+		FontMetrics metrics = comp.getFontMetrics(comp.getFont());
+		int padding = comp.getPreferredSize().width
+				- metrics.stringWidth(rows.get(0));
+		for (String row : rows) {
+			tableWidth = Math.max(metrics.stringWidth(row) + padding,
+					tableWidth);
+		}
+		outputResultsTable.getColumnModel().getColumn(0)
+				.setMaxWidth(tableWidth);
+		outputResultsTable.getColumnModel().getColumn(0)
+				.setPreferredWidth(tableWidth);
 	}
 
 	/**
@@ -261,9 +288,7 @@ public class GUI extends JFrame implements ComponentListener {
 		addressLabel.setText("");
 
 		// remove all rows from table
-		while (tableModel.getRowCount() > 0) {
-			tableModel.removeRow(0);
-		}
+		tableModel.clear();
 
 		// Reset tableWidth to 0
 		tableWidth = 0;
@@ -0,0 +1,176 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HeaderPrefetcher class. Reads the start of the music files waiting to be
+ * parsed, so the parse stage finds their tags already in memory. The files
+ * are read ahead in the order the walk found them, never more than the
+ * prefetch distance ahead of the files taken by the parse stage, each with
+ * one large read on a small pool of threads. On USB drives and network
+ * shares, where opening a file and seeking into it costs far more than the
+ * bytes read, this hides most of the latency of each file behind the parsing
+ * of the files before it. A file the parse stage reaches before its read has
+ * started is read by the parse stage itself.
+ */
+public class HeaderPrefetcher {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Most threads reading ahead at once */
+	private static final int MAX_THREADS = 8;
+
+	/** Number of files read ahead of the parse stage */
+	private final int distance;
+
+	/** Bytes read from the start of each file */
+	private final int length;
+
+	/** Reads the files ahead */
+	private final ExecutorService executor;
+
+	/** Files waiting to be read ahead, in walk order, guarded by this */
+	private final Set<Path> upcoming = new LinkedHashSet<Path>();
+
+	/** Files read or being read ahead, by path, guarded by this */
+	private final Map<Path, Prefetch> prefetched = new HashMap<Path, Prefetch>();
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new HeaderPrefetcher and start its threads
+	 *
+	 * @param config
+	 *            - the prefetch distance and the bytes read from each file
+	 */
+	public HeaderPrefetcher(OrganizerConfig config) {
+		distance = config.getPrefetchDistance();
+		length = config.getPrefetchBytes();
+		executor = Executors.newFixedThreadPool(Math.min(distance, MAX_THREADS),
+				new MigrationPipeline.StageThreadFactory("prefetch"));
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Add a file that will be parsed, after the files added before it
+	 *
+	 * @param file
+	 *            - the music file
+	 */
+	public synchronized void add(Path file) {
+		upcoming.add(file);
+		fill();
+	}
+
+	/**
+	 * Take the start of a file about to be parsed, waiting if it is being
+	 * read, and read ahead one more file
+	 *
+	 * @param file
+	 *            - the music file
+	 * @return the start of the file, or null if the parse stage should read
+	 *         it itself
+	 */
+	public FastTagReader.Head take(Path file) {
+		Prefetch prefetch;
+		synchronized (this) {
+			upcoming.remove(file);
+			prefetch = prefetched.remove(file);
+			fill();
+		}
+
+		// A read that has not started is cancelled, not waited for
+		if (prefetch == null || prefetch.started.compareAndSet(false, true)) {
+			return null;
+		}
+		try {
+			prefetch.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		return prefetch.head;
+	}
+
+	/**
+	 * Stop reading ahead and release the threads
+	 */
+	public synchronized void shutdown() {
+		executor.shutdownNow();
+		upcoming.clear();
+		prefetched.clear();
+	}
+
+	/**
+	 * Start reading the upcoming files until the distance is reached
+	 */
+	private void fill() {
+		Iterator<Path> files = upcoming.iterator();
+		while (prefetched.size() < distance && files.hasNext()) {
+			Path file = files.next();
+			files.remove();
+			Prefetch prefetch = new Prefetch(file);
+			prefetched.put(file, prefetch);
+			executor.execute(prefetch);
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class reading the start of one file, unless the parse stage takes
+	 * the file first.
+	 */
+	class Prefetch implements Runnable {
+
+		/** The music file */
+		final Path file;
+
+		/** Set by whichever of the read and the parse stage comes first */
+		final AtomicBoolean started = new AtomicBoolean();
+
+		/** Counted down once the read has finished */
+		final CountDownLatch done = new CountDownLatch(1);
+
+		/** The start of the file, or null if it could not be read */
+		FastTagReader.Head head;
+
+		Prefetch(Path file) {
+			this.file = file;
+		}
+
+		@Override
+		public void run() {
+			if (!started.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				head = FastTagReader.readHead(file, length);
+			} catch (IOException e) {
+				// The parse stage reads the file and reports the error
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+
+}
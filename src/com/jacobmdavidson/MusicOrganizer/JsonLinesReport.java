@@ -0,0 +1,137 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+
+/**
+ * JsonLinesReport class. Streams the outcome of every file as one JSON object
+ * per line, as soon as it is known, so a report of any size can be followed
+ * or processed while the traversal is still running. The lines of the
+ * human-readable results listing go to a separate stream.
+ */
+public class JsonLinesReport implements MigrationListener {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Receives one JSON line per file */
+	private Writer out;
+
+	/** Receives the results listing */
+	private PrintStream listing;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new JsonLinesReport
+	 *
+	 * @param out
+	 *            - receives one JSON line per file
+	 * @param listing
+	 *            - receives the results listing
+	 */
+	public JsonLinesReport(Writer out, PrintStream listing) {
+		this.out = out;
+		this.listing = listing;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	@Override
+	public void updateListing(String output) {
+		listing.println(output);
+	}
+
+	/**
+	 * Write the outcome of a file as a JSON line, and flush it
+	 */
+	@Override
+	public void fileProcessed(MusicFile musicFile, Status status) {
+		StringBuilder line = new StringBuilder(256);
+		line.append("{\"status\":");
+		appendString(line, status.name().toLowerCase());
+		line.append(",\"source\":");
+		appendString(line, musicFile.getAbsolutePath());
+		line.append(",\"destination\":");
+		if (musicFile.getDestinationFile() == null) {
+			line.append("null");
+		} else {
+			appendString(line, musicFile.getDestinationFile().getPath());
+		}
+		if (musicFile.getChecksum() != null) {
+			line.append(",\"checksum\":");
+			appendString(line, musicFile.getChecksum());
+		}
+		if (status == Status.FAILED) {
+			line.append(",\"message\":");
+			appendString(line, musicFile.getErrorMessage());
+		}
+		line.append("}\n");
+
+		// Lines from different threads must never interleave
+		synchronized (this) {
+			try {
+				out.write(line.toString());
+				out.flush();
+			} catch (IOException e) {
+				System.err.println(e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Flush and close the JSON lines stream
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Append a string as a quoted and escaped JSON string
+	 *
+	 * @param line
+	 *            - line being built
+	 * @param value
+	 *            - string to append
+	 */
+	private static void appendString(StringBuilder line, String value) {
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+
+}
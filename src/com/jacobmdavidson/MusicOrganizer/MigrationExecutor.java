@@ -0,0 +1,34 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * MigrationExecutor interface. Decides on which threads the files discovered
+ * by the directory walk are parsed and migrated. Every implementation reports
+ * its results through the same MusicFileList methods, so the counters and
+ * error listing do not depend on the execution mode.
+ */
+public interface MigrationExecutor {
+
+	/**
+	 * Queue a visible file for migration. May block if too many files are
+	 * already in flight.
+	 *
+	 * @param path
+	 *            - file discovered by the directory walk
+	 * @param attr
+	 *            - attributes of the file, read by the walk
+	 */
+	void submit(Path path, BasicFileAttributes attr);
+
+	/**
+	 * Wait for every submitted file to be migrated, then release the threads.
+	 * Must be called once the directory walk has finished.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	void awaitCompletion() throws InterruptedException;
+
+}
@@ -0,0 +1,261 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * MigrationJournal class. An append-only journal of the music files migrated
+ * by the current traversal, kept next to the scan index. The scan index is
+ * only saved when a traversal finishes, so if the application is killed
+ * halfway through a long migration the journal is all that remembers which
+ * files were already copied. The next traversal replays the journal into the
+ * scan index, and skips those files without reading their tags or bytes. The
+ * journal is forced to disk in batches, rather than after every file, and is
+ * deleted once the scan index has been saved.
+ */
+public class MigrationJournal {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Identifies a journal file */
+	private static final int MAGIC = 0x4D4F4A4C;
+
+	/** Number of records written before the journal is forced to disk */
+	private static final int SYNC_BATCH = 256;
+
+	/** Longest a record waits before the journal is forced to disk */
+	private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+	/** The journal file */
+	private final Path journalFile;
+
+	/** Channel the journal is written through, forced to disk in batches */
+	private FileChannel channel;
+
+	/** Buffers the records until the next batch is written */
+	private DataOutputStream out;
+
+	/** Forces the last records to disk when no more arrive */
+	private ScheduledThreadPoolExecutor syncer;
+
+	/** Number of records written since the journal was last forced */
+	private int unsynced;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new MigrationJournal stored in the specified file
+	 *
+	 * @param journalFile
+	 *            - file the journal is appended to
+	 */
+	public MigrationJournal(Path journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Determine whether an earlier traversal was stopped before it finished,
+	 * leaving its journal behind
+	 *
+	 * @return true if there is a journal to resume from
+	 */
+	public boolean exists() {
+		return Files.exists(journalFile);
+	}
+
+	/**
+	 * Replay the journal left behind by an earlier traversal into the scan
+	 * index. A record cut short by the crash ends the replay, and is cut off
+	 * the journal so the records appended next are read back intact.
+	 *
+	 * @param scanIndex
+	 *            - receives a migrated entry for every record
+	 * @return number of records replayed
+	 */
+	public int replay(ScanIndex scanIndex) {
+		int count = 0;
+
+		// Offset just past the last complete record
+		long complete = 0;
+		try (CountingInputStream counter = new CountingInputStream(
+				new BufferedInputStream(Files.newInputStream(journalFile)));
+				DataInputStream in = new DataInputStream(counter)) {
+			if (in.readInt() != MAGIC) {
+				System.out.println("Ignoring unrecognized journal "
+						+ journalFile);
+			} else {
+				complete = counter.getByteCount();
+				while (true) {
+					String sourcePath = in.readUTF();
+					ScanIndex.Entry entry = new ScanIndex.Entry(in.readLong(),
+							in.readLong(), in.readUTF(), in.readUTF(),
+							in.readUTF(), in.readUTF(), true);
+					scanIndex.record(sourcePath, entry);
+					count++;
+					complete = counter.getByteCount();
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// No journal
+			return 0;
+		} catch (EOFException e) {
+			// The end of the journal was reached
+		} catch (IOException e) {
+			System.out.println("Stopped replaying damaged journal "
+					+ journalFile + ": " + e.toString());
+		}
+		try (FileChannel journal = FileChannel.open(journalFile,
+				StandardOpenOption.WRITE)) {
+			if (journal.size() > complete) {
+				journal.truncate(complete);
+			}
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+		return count;
+	}
+
+	/**
+	 * Open the journal for appending, and start forcing it to disk
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be opened
+	 */
+	public synchronized void open() throws IOException {
+		Files.createDirectories(journalFile.getParent());
+		channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		out = new DataOutputStream(new BufferedOutputStream(
+				Channels.newOutputStream(channel)));
+		if (channel.size() == 0) {
+			out.writeInt(MAGIC);
+			out.flush();
+		}
+		unsynced = 0;
+		syncer = new ScheduledThreadPoolExecutor(1,
+				new MigrationPipeline.StageThreadFactory("journal"));
+		syncer.scheduleWithFixedDelay(this::syncQuietly,
+				SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Record a migrated music file. The record reaches the disk with the next
+	 * batch. Safe to call from any thread.
+	 *
+	 * @param size
+	 *            - size of the source file
+	 * @param lastModified
+	 *            - modification time of the source file, in milliseconds
+	 * @param musicFile
+	 *            - the migrated music file
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public synchronized void record(long size, long lastModified,
+			MusicFile musicFile) throws IOException {
+		if (out == null) {
+			return;
+		}
+		out.writeUTF(musicFile.getAbsolutePath());
+		out.writeLong(size);
+		out.writeLong(lastModified);
+		out.writeUTF(musicFile.getArtist());
+		out.writeUTF(musicFile.getAlbumTitle());
+		out.writeUTF(musicFile.getSongTitle());
+		out.writeUTF(musicFile.getDestinationFile().getAbsolutePath());
+		if (++unsynced >= SYNC_BATCH) {
+			sync();
+		}
+	}
+
+	/**
+	 * Force the records written so far to disk, without waiting for the
+	 * batch to fill
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	public void flush() throws IOException {
+		sync();
+	}
+
+	/**
+	 * Write the buffered records and force them to disk
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	private synchronized void sync() throws IOException {
+		if (out == null || unsynced == 0) {
+			return;
+		}
+		out.flush();
+		channel.force(false);
+		unsynced = 0;
+	}
+
+	/**
+	 * Force the buffered records to disk from the syncing thread
+	 */
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+	}
+
+	/**
+	 * Force the last records to disk and close the journal
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		if (out == null) {
+			return;
+		}
+		syncer.shutdownNow();
+		try {
+			sync();
+		} finally {
+			out.close();
+			out = null;
+			channel = null;
+		}
+	}
+
+	/**
+	 * Delete the journal, once the scan index holds everything it recorded
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be deleted
+	 */
+	public void delete() throws IOException {
+		Files.deleteIfExists(journalFile);
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * MigrationListener interface. Receives the output of a traversal: the lines
+ * of the results listing, and the outcome of each file as it is processed.
+ * Implemented by the GUI, and by the command line reports.
+ */
+public interface MigrationListener {
+
+	/** Outcome of processing one visible file */
+	enum Status {
+
+		/** The file was migrated to its destination */
+		MIGRATED,
+
+		/** An earlier traversal migrated the file, and it has not changed */
+		UNCHANGED,
+
+		/** The file could not be migrated */
+		FAILED
+	}
+
+	/**
+	 * Add a line to the results listing
+	 *
+	 * @param output
+	 *            - line of output
+	 */
+	void updateListing(String output);
+
+	/**
+	 * Called once for every visible file, as soon as its outcome is known. May
+	 * be called from several threads at once.
+	 *
+	 * @param musicFile
+	 *            - the processed file
+	 * @param status
+	 *            - outcome of processing the file
+	 */
+	default void fileProcessed(MusicFile musicFile, Status status) {
+	}
+
+}
@@ -0,0 +1,360 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * MigrationMetrics class. Counts the work done by each stage of a migration,
+ * and records how long every unit of work took in a histogram with one bucket
+ * per power of two nanoseconds. Recording is lock free and safe from any
+ * thread, and costs a few atomic additions, so the stages can be timed on
+ * every file. The statistics can be exported over JMX.
+ */
+public class MigrationMetrics implements MigrationMetricsMXBean {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Name the metrics are registered under */
+	public static final String OBJECT_NAME = "com.jacobmdavidson.MusicOrganizer:type=MigrationMetrics";
+
+	/** Nanoseconds in a millisecond */
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	/** Nanoseconds in a second */
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	/** Statistics of each stage */
+	private final Map<Stage, StageRecorder> recorders = new EnumMap<Stage, StageRecorder>(
+			Stage.class);
+
+	/** Bytes copied, leaving out files linked or renamed into place */
+	private final LongAdder bytesCopied = new LongAdder();
+
+	/** Time the statistics were last cleared, from System.nanoTime */
+	private volatile long startTime = System.nanoTime();
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new MigrationMetrics with every statistic cleared
+	 */
+	public MigrationMetrics() {
+		for (Stage stage : Stage.values()) {
+			recorders.put(stage, new StageRecorder());
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Record one unit of work done by a stage. Safe to call from any thread.
+	 *
+	 * @param stage
+	 *            - stage that did the work
+	 * @param nanos
+	 *            - time the work took, in nanoseconds
+	 */
+	public void record(Stage stage, long nanos) {
+		recorders.get(stage).record(nanos);
+	}
+
+	/**
+	 * Add to the number of bytes copied. Safe to call from any thread.
+	 *
+	 * @param bytes
+	 *            - size of a file whose bytes were copied, not linked or
+	 *            renamed into place
+	 */
+	public void addBytesCopied(long bytes) {
+		bytesCopied.add(bytes);
+	}
+
+	/**
+	 * Return the time the statistics were last cleared
+	 *
+	 * @return start time, from System.nanoTime
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server, replacing any
+	 * metrics already registered under the same name
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			System.out.println("Cannot export metrics: " + e.toString());
+		}
+	}
+
+	/**
+	 * Return the statistics of a stage
+	 *
+	 * @param stage
+	 *            - the stage
+	 * @return a snapshot of the statistics
+	 */
+	public StageStatistics getStatistics(Stage stage) {
+		return recorders.get(stage).snapshot(getElapsedSeconds());
+	}
+
+	@Override
+	public StageStatistics getWalk() {
+		return getStatistics(Stage.WALK);
+	}
+
+	@Override
+	public StageStatistics getHiddenCheck() {
+		return getStatistics(Stage.HIDDEN_CHECK);
+	}
+
+	@Override
+	public StageStatistics getTagParse() {
+		return getStatistics(Stage.TAG_PARSE);
+	}
+
+	@Override
+	public StageStatistics getDestinationBuild() {
+		return getStatistics(Stage.DESTINATION_BUILD);
+	}
+
+	@Override
+	public StageStatistics getCopy() {
+		return getStatistics(Stage.COPY);
+	}
+
+	@Override
+	public long getBytesCopied() {
+		return bytesCopied.sum();
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		double elapsed = getElapsedSeconds();
+		return elapsed > 0 ? getBytesCopied() / elapsed : 0;
+	}
+
+	@Override
+	public double getElapsedSeconds() {
+		return (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+	}
+
+	@Override
+	public void reset() {
+		for (StageRecorder recorder : recorders.values()) {
+			recorder.reset();
+		}
+		bytesCopied.reset();
+		startTime = System.nanoTime();
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * The stages a music file passes through.
+	 */
+	public enum Stage {
+
+		/** The walker finding the next file */
+		WALK,
+
+		/** Checking whether the file is hidden */
+		HIDDEN_CHECK,
+
+		/** Reading and cleaning the tags */
+		TAG_PARSE,
+
+		/** Building the destination path from the tags */
+		DESTINATION_BUILD,
+
+		/** Placing the file at its destination */
+		COPY
+	}
+
+	/**
+	 * Inner class collecting the statistics of one stage.
+	 */
+	static class StageRecorder {
+
+		/** One bucket per power of two nanoseconds */
+		private static final int BUCKETS = 64;
+
+		/** Units of work recorded */
+		private final LongAdder count = new LongAdder();
+
+		/** Total time of the recorded work, in nanoseconds */
+		private final LongAdder totalNanos = new LongAdder();
+
+		/** Longest unit of work, in nanoseconds */
+		private final LongAccumulator maxNanos = new LongAccumulator(
+				Math::max, 0);
+
+		/** Bucket i counts work that took less than 2^i nanoseconds */
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+		/**
+		 * Record one unit of work
+		 *
+		 * @param nanos
+		 *            - time the work took, in nanoseconds
+		 */
+		void record(long nanos) {
+			nanos = Math.max(0, nanos);
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			histogram.incrementAndGet(Math.min(BUCKETS - 1,
+					BUCKETS - Long.numberOfLeadingZeros(nanos)));
+		}
+
+		/**
+		 * Clear the statistics
+		 */
+		void reset() {
+			count.reset();
+			totalNanos.reset();
+			maxNanos.reset();
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram.set(i, 0);
+			}
+		}
+
+		/**
+		 * Take a snapshot of the statistics. Work recorded while the snapshot
+		 * is taken may be partly included.
+		 *
+		 * @param elapsedSeconds
+		 *            - time since the statistics were cleared
+		 * @return the snapshot
+		 */
+		StageStatistics snapshot(double elapsedSeconds) {
+			long[] buckets = new long[BUCKETS];
+			long bucketTotal = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] = histogram.get(i);
+				bucketTotal += buckets[i];
+			}
+			long units = count.sum();
+			return new StageStatistics(units, elapsedSeconds > 0 ? units
+					/ elapsedSeconds : 0, units > 0 ? totalNanos.sum()
+					/ NANOS_PER_MILLI / units : 0, percentile(buckets,
+					bucketTotal, 0.5), percentile(buckets, bucketTotal, 0.99),
+					maxNanos.get() / NANOS_PER_MILLI);
+		}
+
+		/**
+		 * Estimate a percentile as the upper bound of the bucket it falls in
+		 *
+		 * @param buckets
+		 *            - the histogram
+		 * @param total
+		 *            - sum of the buckets
+		 * @param fraction
+		 *            - the percentile, between 0 and 1
+		 * @return the percentile, in milliseconds
+		 */
+		private static double percentile(long[] buckets, long total,
+				double fraction) {
+			long rank = (long) Math.ceil(total * fraction);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets[i];
+				if (seen > 0 && seen >= rank) {
+					return Math.scalb(1.0, i) / NANOS_PER_MILLI;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Inner class holding an immutable snapshot of the statistics of one
+	 * stage. JMX clients see it as a composite of its properties.
+	 */
+	public static class StageStatistics {
+
+		/** Units of work done */
+		private final long count;
+
+		/** Units of work per second since the statistics were cleared */
+		private final double ratePerSecond;
+
+		/** Average time of a unit of work, in milliseconds */
+		private final double meanMillis;
+
+		/** Median time of a unit of work, in milliseconds */
+		private final double p50Millis;
+
+		/** 99th percentile time of a unit of work, in milliseconds */
+		private final double p99Millis;
+
+		/** Longest unit of work, in milliseconds */
+		private final double maxMillis;
+
+		StageStatistics(long count, double ratePerSecond, double meanMillis,
+				double p50Millis, double p99Millis, double maxMillis) {
+			this.count = count;
+			this.ratePerSecond = ratePerSecond;
+			this.meanMillis = meanMillis;
+			this.p50Millis = p50Millis;
+			this.p99Millis = p99Millis;
+			this.maxMillis = maxMillis;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getRatePerSecond() {
+			return ratePerSecond;
+		}
+
+		public double getMeanMillis() {
+			return meanMillis;
+		}
+
+		public double getP50Millis() {
+			return p50Millis;
+		}
+
+		public double getP99Millis() {
+			return p99Millis;
+		}
+
+		public double getMaxMillis() {
+			return maxMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d (%.1f/s, mean %.3f ms, p50 < %.3f ms, "
+					+ "p99 < %.3f ms, max %.3f ms)", count, ratePerSecond,
+					meanMillis, p50Millis, p99Millis, maxMillis);
+		}
+	}
+
+}
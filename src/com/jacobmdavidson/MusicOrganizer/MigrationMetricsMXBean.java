@@ -0,0 +1,75 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * MigrationMetricsMXBean interface. The management interface of the
+ * migration metrics, registered with the platform MBean server so JConsole or
+ * any other JMX client can watch a traversal while it runs. Each stage is
+ * exposed as a composite of its count, rate and latency percentiles.
+ */
+public interface MigrationMetricsMXBean {
+
+	/**
+	 * Return the statistics of the directory walk, the time the walker spends
+	 * between two visited files
+	 *
+	 * @return walk statistics
+	 */
+	MigrationMetrics.StageStatistics getWalk();
+
+	/**
+	 * Return the statistics of the hidden file check
+	 *
+	 * @return hidden file check statistics
+	 */
+	MigrationMetrics.StageStatistics getHiddenCheck();
+
+	/**
+	 * Return the statistics of reading and cleaning the tags
+	 *
+	 * @return tag parse statistics
+	 */
+	MigrationMetrics.StageStatistics getTagParse();
+
+	/**
+	 * Return the statistics of building the destination path
+	 *
+	 * @return destination build statistics
+	 */
+	MigrationMetrics.StageStatistics getDestinationBuild();
+
+	/**
+	 * Return the statistics of placing files at their destination
+	 *
+	 * @return copy statistics
+	 */
+	MigrationMetrics.StageStatistics getCopy();
+
+	/**
+	 * Return the number of bytes copied since the traversal started. Files
+	 * linked or renamed into place copy no bytes.
+	 *
+	 * @return bytes copied
+	 */
+	long getBytesCopied();
+
+	/**
+	 * Return the average number of bytes copied per second since the
+	 * traversal started
+	 *
+	 * @return bytes per second
+	 */
+	double getBytesPerSecond();
+
+	/**
+	 * Return the time since the traversal started
+	 *
+	 * @return elapsed seconds
+	 */
+	double getElapsedSeconds();
+
+	/**
+	 * Clear every statistic and restart the clock
+	 */
+	void reset();
+
+}
@@ -0,0 +1,210 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MigrationPipeline class. Splits the migration of each music file into two
+ * stages, each backed by its own pool of worker threads: a parse stage that
+ * reads the tags and builds the destination, and a copy stage that migrates
+ * the file. The directory walk only submits paths, so walking, tag parsing and
+ * copying overlap. The copies are run by a CopyScheduler, which limits them
+ * per drive, and the start of the files waiting to be parsed can be read
+ * ahead by a HeaderPrefetcher. The queues in front of each stage are
+ * bounded, and a full queue blocks the submitting thread, so no stage can run
+ * arbitrarily far ahead of the next one.
+ */
+public class MigrationPipeline implements MigrationExecutor {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Runs the tag parsing stage */
+	private ThreadPoolExecutor parseExecutor;
+
+	/** Runs the copy stage, as many copies at once as each drive allows */
+	private CopyScheduler copyScheduler;
+
+	/** Reads the start of the files ahead of the parse stage, or null */
+	private HeaderPrefetcher prefetcher;
+
+	/** Receives the result of every file that leaves the pipeline */
+	private MusicFileList musicFileList;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new MigrationPipeline and start its worker threads
+	 *
+	 * @param musicFileList
+	 *            - receives the result of every migration attempt
+	 * @param config
+	 *            - thread counts and queue capacity for the stages
+	 */
+	public MigrationPipeline(MusicFileList musicFileList, OrganizerConfig config) {
+		this.musicFileList = musicFileList;
+		parseExecutor = createExecutor("parse", config.getParseThreads(),
+				config.getQueueCapacity());
+		copyScheduler = new CopyScheduler(musicFileList.getOutputPath(),
+				config);
+		if (config.getPrefetchDistance() > 0) {
+			prefetcher = new HeaderPrefetcher(config);
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Queue a visible file for tag parsing. Blocks while the parse queue is
+	 * full.
+	 */
+	@Override
+	public void submit(Path path, BasicFileAttributes attr) {
+		if (prefetcher != null && musicFileList.needsTags(path, attr)) {
+			prefetcher.add(path);
+		}
+		parseExecutor.execute(() -> parse(path, attr));
+	}
+
+	/**
+	 * Parse stage: read the tags and build the destination, then hand the file
+	 * to the copy stage. Whatever the parse throws is recorded as the failure
+	 * of the file, so neither the worker thread nor the file is lost.
+	 *
+	 * @param path
+	 *            - file to parse
+	 * @param attr
+	 *            - attributes of the file, read by the walk
+	 */
+	private void parse(Path path, BasicFileAttributes attr) {
+		MusicFile musicFile;
+		try {
+			FastTagReader.Head head = null;
+			if (prefetcher != null) {
+				head = prefetcher.take(path);
+			}
+			musicFile = musicFileList.parseFile(path, attr, head);
+		} catch (Throwable t) {
+			musicFileList.recordParseFailure(path, attr, t);
+			return;
+		}
+		if (musicFile != null) {
+			copyScheduler.schedule(path, () -> copy(musicFile, attr));
+		}
+	}
+
+	/**
+	 * Copy stage: migrate a parsed file. Whatever the migration throws is
+	 * recorded as the failure of the file.
+	 *
+	 * @param musicFile
+	 *            - the parsed music file
+	 * @param attr
+	 *            - attributes of the file, read by the walk
+	 */
+	private void copy(MusicFile musicFile, BasicFileAttributes attr) {
+		try {
+			musicFileList.migrate(musicFile, attr);
+		} catch (Throwable t) {
+			musicFileList.recordMigrationFailure(musicFile, attr, t);
+		}
+	}
+
+	/**
+	 * Wait for every submitted file to pass through both stages, then stop the
+	 * worker threads.
+	 */
+	@Override
+	public void awaitCompletion() throws InterruptedException {
+		// Parse tasks feed the copy stage, so drain them first
+		parseExecutor.shutdown();
+		parseExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		if (prefetcher != null) {
+			prefetcher.shutdown();
+		}
+		copyScheduler.awaitCompletion();
+	}
+
+	/**
+	 * Build a fixed size executor with a bounded queue that blocks the caller
+	 * when it is full
+	 *
+	 * @param stage
+	 *            - stage name, used for the thread names
+	 * @param threads
+	 *            - number of worker threads
+	 * @param queueCapacity
+	 *            - maximum number of queued tasks
+	 * @return the executor
+	 */
+	private static ThreadPoolExecutor createExecutor(String stage, int threads,
+			int queueCapacity) {
+		return new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						queueCapacity), new StageThreadFactory(stage),
+				new BlockWhenFull());
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class that names the worker threads after their stage, and makes
+	 * them daemons so they never keep the application alive.
+	 */
+	static class StageThreadFactory implements ThreadFactory {
+
+		/** Name of the stage the threads belong to */
+		private final String stage;
+
+		/** Number of threads created so far */
+		private final AtomicInteger count = new AtomicInteger();
+
+		StageThreadFactory(String stage) {
+			this.stage = stage;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "MusicOrganizer-" + stage
+					+ "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Inner class that applies back pressure: instead of rejecting a task when
+	 * the queue is full, the submitting thread waits for space.
+	 */
+	static class BlockWhenFull implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable task,
+				ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Stage is shut down");
+			}
+			try {
+				executor.getQueue().put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+		}
+	}
+
+}
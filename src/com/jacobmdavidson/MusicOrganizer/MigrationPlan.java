@@ -0,0 +1,408 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MigrationPlan class. The source and destination of every music file a
+ * traversal would migrate, recorded before anything is copied. Instead of one
+ * MusicFile per track, each planned file is a row of primitive arrays holding
+ * the ids of interned path segments: the source folder, the source file name,
+ * the destination folder and the destination file name. Folder names and tags
+ * shared by many tracks are stored once. The plan finds destination
+ * collisions and the bytes copied into each destination folder as files are
+ * added, and can be executed without reading any tags again. Destinations are
+ * compared the way the DestinationIndex compares them, in Unicode NFC form
+ * and lower case. Adding files is safe from any thread.
+ */
+public class MigrationPlan {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Initial number of rows */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** The folder music is organized into */
+	private final String outputPath;
+
+	/** Destinations already in the output tree, or null to ask the disk */
+	private final DestinationIndex destinations;
+
+	/** Interned path segments and tags, by id */
+	private final List<String> segments = new ArrayList<String>();
+
+	/** Ids of the interned segments */
+	private final Map<String, Integer> segmentIds = new HashMap<String, Integer>();
+
+	/** Artist segment of each destination folder */
+	private int[] folderArtist = new int[INITIAL_CAPACITY];
+
+	/** Album segment of each destination folder */
+	private int[] folderAlbum = new int[INITIAL_CAPACITY];
+
+	/** Bytes planned into each destination folder */
+	private long[] folderBytes = new long[INITIAL_CAPACITY];
+
+	/** Ids of the destination folders, keyed by artist and album segment */
+	private final Map<Long, Integer> folderIds = new HashMap<Long, Integer>();
+
+	/** Number of destination folders */
+	private int folderCount;
+
+	/** Source folder segment of each row */
+	private int[] sourceFolder = new int[INITIAL_CAPACITY];
+
+	/** Source file name segment of each row */
+	private int[] sourceName = new int[INITIAL_CAPACITY];
+
+	/** Destination folder of each row */
+	private int[] destinationFolder = new int[INITIAL_CAPACITY];
+
+	/** Song title segment of each row */
+	private int[] title = new int[INITIAL_CAPACITY];
+
+	/** Row planned to the same destination first, or -1 */
+	private int[] collidesWith = new int[INITIAL_CAPACITY];
+
+	/** Size of the source file of each row */
+	private long[] size = new long[INITIAL_CAPACITY];
+
+	/** Modification time of the source file of each row, in milliseconds */
+	private long[] lastModified = new long[INITIAL_CAPACITY];
+
+	/** Ids of the folded path segments */
+	private final Map<String, Integer> foldedIds = new HashMap<String, Integer>();
+
+	/** Ids of the folded destination folders, keyed by folded segments */
+	private final Map<Long, Integer> foldedFolderIds = new HashMap<Long, Integer>();
+
+	/** First row of each destination, keyed by folded folder and file name */
+	private final Map<Long, Integer> firstByDestination = new HashMap<Long, Integer>();
+
+	/** Number of rows */
+	private int count;
+
+	/** Number of rows whose destination is planned for an earlier row */
+	private int collisions;
+
+	/** Number of rows whose destination already exists */
+	private int existing;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new, empty MigrationPlan
+	 *
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param destinations
+	 *            - destinations already in the output tree, or null to check
+	 *            each destination on disk
+	 */
+	public MigrationPlan(String outputPath, DestinationIndex destinations) {
+		this.outputPath = outputPath;
+		this.destinations = destinations;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Add a parsed music file to the plan. Only the path segments, tags and
+	 * the source size and modification time are kept.
+	 *
+	 * @param musicFile
+	 *            - a music file whose destination has been built
+	 * @param fileSize
+	 *            - size of the source file
+	 * @param modified
+	 *            - modification time of the source file, in milliseconds
+	 */
+	public void add(MusicFile musicFile, long fileSize, long modified) {
+		File source = new File(musicFile.getAbsolutePath());
+		File destinationFile = musicFile.getDestinationFile();
+		boolean exists = destinations != null ? destinations
+				.contains(destinationFile) : destinationFile.exists();
+		synchronized (this) {
+			if (count == size.length) {
+				grow();
+			}
+			int row = count++;
+			sourceFolder[row] = intern(source.getParent());
+			sourceName[row] = intern(source.getName());
+			title[row] = intern(musicFile.getSongTitle());
+			int folder = folder(intern(musicFile.getArtist()),
+					intern(musicFile.getAlbumTitle()));
+			destinationFolder[row] = folder;
+			size[row] = fileSize;
+			lastModified[row] = modified;
+			if (exists) {
+				existing++;
+			}
+
+			// The destination file name is the title and source extension
+			long destination = ((long) foldedFolder(musicFile.getArtist(),
+					musicFile.getAlbumTitle()) << 32)
+					| internFolded(destinationFile.getName());
+			Integer first = firstByDestination.putIfAbsent(destination, row);
+			if (first == null) {
+				collidesWith[row] = -1;
+				if (!exists) {
+					folderBytes[folder] += fileSize;
+				}
+			} else {
+				collidesWith[row] = first;
+				collisions++;
+			}
+		}
+	}
+
+	/**
+	 * Return the number of planned files
+	 *
+	 * @return number of rows
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Return the number of planned files whose destination is planned for
+	 * another file first
+	 *
+	 * @return number of collisions
+	 */
+	public synchronized int getCollisionCount() {
+		return collisions;
+	}
+
+	/**
+	 * Return the number of planned files whose destination already exists
+	 *
+	 * @return number of existing destinations
+	 */
+	public synchronized int getExistingCount() {
+		return existing;
+	}
+
+	/**
+	 * Return the number of destination folders
+	 *
+	 * @return number of destination folders
+	 */
+	public synchronized int getFolderCount() {
+		return folderCount;
+	}
+
+	/**
+	 * Return every collision, as the destination and the sources planned to
+	 * it, the first of which would be migrated
+	 *
+	 * @return sources by destination path
+	 */
+	public synchronized Map<String, List<String>> getCollisions() {
+		Map<String, List<String>> result = new HashMap<String, List<String>>();
+		for (int row = 0; row < count; row++) {
+			if (collidesWith[row] >= 0) {
+				int first = collidesWith[row];
+				result.computeIfAbsent(destinationPath(first),
+						key -> new ArrayList<String>(Arrays
+								.asList(sourcePath(first)))).add(
+						sourcePath(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the bytes that would be copied into each destination folder
+	 *
+	 * @return bytes by destination folder path
+	 */
+	public synchronized Map<String, Long> getBytesByFolder() {
+		Map<String, Long> result = new HashMap<String, Long>();
+		for (int folder = 0; folder < folderCount; folder++) {
+			result.put(folderPath(folder), folderBytes[folder]);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the bytes that would be written to the output folder: the size
+	 * of every planned file whose destination is neither taken by an earlier
+	 * file nor already present
+	 *
+	 * @return required bytes
+	 */
+	public synchronized long getRequiredBytes() {
+		long required = 0;
+		for (int folder = 0; folder < folderCount; folder++) {
+			required += folderBytes[folder];
+		}
+		return required;
+	}
+
+	/**
+	 * Return the usable space of the file store the output folder is on
+	 *
+	 * @return free bytes
+	 * @throws IOException
+	 *             if the file store cannot be found
+	 */
+	public long getUsableSpace() throws IOException {
+		// The output folder may not exist yet
+		return StorageDevice.findFileStore(Paths.get(outputPath))
+				.getUsableSpace();
+	}
+
+	/**
+	 * Rebuild the music file of a row, without reading its tags
+	 *
+	 * @param row
+	 *            - row of the plan
+	 * @return the music file, ready to migrate
+	 */
+	public synchronized MusicFile getMusicFile(int row) {
+		int folder = destinationFolder[row];
+		return new MusicFile(new File(sourcePath(row)), outputPath,
+				segments.get(folderArtist[folder]),
+				segments.get(folderAlbum[folder]), segments.get(title[row]));
+	}
+
+	/**
+	 * Return the size of the source file of a row
+	 *
+	 * @param row
+	 *            - row of the plan
+	 * @return size in bytes
+	 */
+	public synchronized long getSize(int row) {
+		return size[row];
+	}
+
+	/**
+	 * Return the modification time of the source file of a row
+	 *
+	 * @param row
+	 *            - row of the plan
+	 * @return modification time, in milliseconds
+	 */
+	public synchronized long getLastModified(int row) {
+		return lastModified[row];
+	}
+
+	/**
+	 * Return the id of a segment, interning it if it is new
+	 */
+	private int intern(String segment) {
+		Integer id = segmentIds.get(segment);
+		if (id == null) {
+			id = segments.size();
+			segments.add(segment);
+			segmentIds.put(segment, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Return the id of a segment folded to its destination key, interning it
+	 * if it is new
+	 */
+	private int internFolded(String segment) {
+		String folded = DestinationIndex.fold(segment);
+		Integer id = foldedIds.get(folded);
+		if (id == null) {
+			id = foldedIds.size();
+			foldedIds.put(folded, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Return the id of the folded destination folder of an album, shared by
+	 * every album whose artist and title fold to the same key
+	 */
+	private int foldedFolder(String artist, String album) {
+		Long key = ((long) internFolded(artist) << 32) | internFolded(album);
+		Integer id = foldedFolderIds.get(key);
+		if (id == null) {
+			id = foldedFolderIds.size();
+			foldedFolderIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Return the id of the destination folder of an album, adding it if it
+	 * is new
+	 */
+	private int folder(int artist, int album) {
+		Long key = ((long) artist << 32) | album;
+		Integer id = folderIds.get(key);
+		if (id == null) {
+			if (folderCount == folderArtist.length) {
+				int capacity = folderCount * 2;
+				folderArtist = Arrays.copyOf(folderArtist, capacity);
+				folderAlbum = Arrays.copyOf(folderAlbum, capacity);
+				folderBytes = Arrays.copyOf(folderBytes, capacity);
+			}
+			id = folderCount++;
+			folderArtist[id] = artist;
+			folderAlbum[id] = album;
+			folderIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Double the capacity of the rows
+	 */
+	private void grow() {
+		int capacity = count * 2;
+		sourceFolder = Arrays.copyOf(sourceFolder, capacity);
+		sourceName = Arrays.copyOf(sourceName, capacity);
+		destinationFolder = Arrays.copyOf(destinationFolder, capacity);
+		title = Arrays.copyOf(title, capacity);
+		collidesWith = Arrays.copyOf(collidesWith, capacity);
+		size = Arrays.copyOf(size, capacity);
+		lastModified = Arrays.copyOf(lastModified, capacity);
+	}
+
+	/**
+	 * Return the source path of a row
+	 */
+	private String sourcePath(int row) {
+		return segments.get(sourceFolder[row]) + File.separator
+				+ segments.get(sourceName[row]);
+	}
+
+	/**
+	 * Return the destination folder path, ending with a separator
+	 */
+	private String folderPath(int folder) {
+		return outputPath + File.separator
+				+ segments.get(folderArtist[folder]) + File.separator
+				+ segments.get(folderAlbum[folder]) + File.separator;
+	}
+
+	/**
+	 * Return the destination path of a row
+	 */
+	private String destinationPath(int row) {
+		String name = segments.get(sourceName[row]);
+		return folderPath(destinationFolder[row]) + segments.get(title[row])
+				+ name.substring(name.lastIndexOf('.'));
+	}
+
+}
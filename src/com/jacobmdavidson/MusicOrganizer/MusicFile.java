@@ -1,48 +1,56 @@
 package com.jacobmdavidson.MusicOrganizer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.Tag;
-
+import org.jaudiotagger.audio.SupportedFileFormat;
+
+/**
+ * MusicFile class. The outcome of reading the tags of one music file: its
+ * source path, the cleaned artist, album and song title, and the reason it
+ * cannot be migrated, if any. The tags are copied out as strings as soon as
+ * they are read, so no tag, artwork or audio is held, and the destination is
+ * kept as the folder prefix shared by the whole album. A MusicFile is
+ * immutable apart from the outcome of its migration, and small enough to
+ * hold a plan, a batch or a queue of them in memory.
+ */
 public class MusicFile {
 
-	/** The source music file */
-	private File musicFile;
-
-	/** The destination music file */
-	private File destinationFile;
-
-	/** The Tags of the source music file */
-	private Tag musicFileTag;
+	/** Destination folder paths shared by every MusicFile */
+	private static final DestinationPrefixCache PREFIXES = new DestinationPrefixCache();
 
-	/** Error flag set to true if an error occured during the copy */
-	private boolean error = false;
-
-	/** The file extension type for the music file */
-	private String fileExtension;
+	/** Extensions of the files whose tags can be read, without the dot */
+	private static final Set<String> MUSIC_EXTENSIONS = musicExtensions();
 
 	/** The absolute path of the source music file */
-	private String absolutePath;
+	private final String absolutePath;
 
 	/** The artist of the source music file */
-	private String artist;
+	private final String artist;
 
 	/** The album title of the source music file */
-	private String albumTitle;
+	private final String albumTitle;
 
 	/** The song title of the source music file */
-	private String songTitle;
+	private final String songTitle;
+
+	/**
+	 * The destination, built once from the folder prefix shared with the
+	 * other songs of the album, or null if the tags did not yield one
+	 */
+	private final File destinationFile;
 
-	/** The path to the default documents folder */
-	private String documentsPath;
+	/** Reason the file cannot be migrated, if an error occured */
+	private ErrorCode errorCode;
 
-	/** Error message, if an error occured */
-	private String errorMessage = "";
+	/** Outcome of the transfer to the destination, or null */
+	private TransferStrategy.Transfer transfer;
 
 	// -----------------------------------------------------------------------
 	// Constructors
@@ -53,97 +61,276 @@ public class MusicFile {
 	 * 
 	 * @param musicFile
 	 *            - source music file
-	 * @param documentsPath
-	 *            - default documents folder for the user
+	 * @param outputPath
+	 *            - folder music is organized into
 	 */
-	public MusicFile(File musicFile, String documentsPath) {
+	public MusicFile(File musicFile, String outputPath) {
+		this(musicFile, outputPath, (MigrationMetrics) null);
+	}
 
-		// Set the music file and documents path
-		this.musicFile = musicFile;
-		this.documentsPath = documentsPath;
+	/**
+	 * Create a new MusicFile object, timing the tag parse and destination
+	 * build stages
+	 * 
+	 * @param musicFile
+	 *            - source music file
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param metrics
+	 *            - records the time of each stage, or null
+	 */
+	MusicFile(File musicFile, String outputPath, MigrationMetrics metrics) {
+		this(musicFile, outputPath, metrics, null);
+	}
 
-		// Determine the absolute path for the source music file
-		absolutePath = musicFile.getAbsolutePath();
+	/**
+	 * Create a new MusicFile object from a file whose start may already have
+	 * been read, timing the tag parse and destination build stages
+	 * 
+	 * @param musicFile
+	 *            - source music file
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param metrics
+	 *            - records the time of each stage, or null
+	 * @param head
+	 *            - the start of the file read ahead of time, or null
+	 */
+	MusicFile(File musicFile, String outputPath, MigrationMetrics metrics,
+			FastTagReader.Head head) {
+		this(musicFile.getAbsolutePath(), outputPath, readTags(musicFile,
+				head, metrics), metrics);
+	}
 
-		// Retreive the file extension from the absolute path
-		fileExtension = FilenameUtils.getExtension(absolutePath);
+	/**
+	 * Create a new MusicFile object from tags indexed by an earlier traversal,
+	 * without reading the tags again
+	 * 
+	 * @param musicFile
+	 *            - source music file
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param indexEntry
+	 *            - indexed tags of the unchanged source file
+	 */
+	public MusicFile(File musicFile, String outputPath,
+			ScanIndex.Entry indexEntry) {
+		// The indexed tags were cleaned before they were stored
+		this(musicFile, outputPath, indexEntry.getArtist(), indexEntry
+				.getAlbumTitle(), indexEntry.getSongTitle());
+	}
 
-		// If this is a valid music file, retrieve the Tag, and copy the file to
-		// the destination
-		if (fileExtension.equals("mp3") || fileExtension.equals("m4a")
-				|| fileExtension.equals("m4p")) {
-			try {
-				AudioFile audioF = AudioFileIO.read(this.musicFile);
-				musicFileTag = audioF.getTag();
+	/**
+	 * Create a new MusicFile object from tags that were already read and
+	 * cleaned, by an earlier traversal or a migration plan
+	 * 
+	 * @param musicFile
+	 *            - source music file
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param artist
+	 *            - cleaned artist
+	 * @param albumTitle
+	 *            - cleaned album title
+	 * @param songTitle
+	 *            - cleaned song title
+	 */
+	MusicFile(File musicFile, String outputPath, String artist,
+			String albumTitle, String songTitle) {
+		this(musicFile.getAbsolutePath(), outputPath, new ParsedTags(artist,
+				albumTitle, songTitle), null);
+	}
 
-				// Set the artist, album, and song titles
-				error = setAttributes();
+	/**
+	 * Create a new MusicFile object for a file that failed before its tags
+	 * could be used
+	 * 
+	 * @param musicFile
+	 *            - source music file
+	 * @param errorCode
+	 *            - reason the file cannot be migrated
+	 */
+	MusicFile(File musicFile, ErrorCode errorCode) {
+		this(musicFile.getAbsolutePath(), null, new ParsedTags(errorCode),
+				null);
+	}
 
-				// Set the destination file
-				if (!error)
-					constructDestination();
-			} catch (Exception e) {
-				error = true;
-				errorMessage = "unidentified error.";
+	/**
+	 * Create a new MusicFile object from cleaned tags, and build its
+	 * destination from the folder prefix of the album, the song title and the
+	 * source extension
+	 * 
+	 * @param absolutePath
+	 *            - absolute path of the source music file
+	 * @param outputPath
+	 *            - folder music is organized into
+	 * @param tags
+	 *            - the cleaned tags, or the reason they could not be read
+	 * @param metrics
+	 *            - records the time of the destination build, or null
+	 */
+	private MusicFile(String absolutePath, String outputPath,
+			ParsedTags tags, MigrationMetrics metrics) {
+		this.absolutePath = absolutePath;
+		artist = tags.artist;
+		albumTitle = tags.albumTitle;
+		songTitle = tags.songTitle;
+		errorCode = tags.errorCode;
+		if (errorCode == null) {
+			long start = System.nanoTime();
+			// Albums share their folder prefix, only the file name is new
+			String prefix = PREFIXES.get(outputPath, artist, albumTitle);
+			String extension = FilenameUtils.getExtension(absolutePath);
+			destinationFile = new File(new StringBuilder(prefix.length()
+					+ songTitle.length() + extension.length() + 1)
+					.append(prefix).append(songTitle).append('.')
+					.append(extension).toString());
+			if (metrics != null) {
+				metrics.record(MigrationMetrics.Stage.DESTINATION_BUILD,
+						System.nanoTime() - start);
 			}
-
-			// Else, this is not a valid music file, set the error flag and
-			// error message
 		} else {
-			errorMessage = "not a valid music file.";
-			error = true;
+			destinationFile = null;
 		}
-
 	}
 
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
 	/**
-	 * Set the artist, album, and song title attributes
+	 * Determine whether a file name has the extension of a music file whose
+	 * tags can be read. Which of them a traversal migrates is chosen by the
+	 * extensions setting.
+	 * 
+	 * @param fileName
+	 *            - name or path of the file
+	 * @return true for mp3 and MPEG-4 files, and the other formats
+	 *         Jaudiotagger reads, such as flac and ogg
 	 */
-	private boolean setAttributes() {
+	public static boolean isMusicFile(String fileName) {
+		return MUSIC_EXTENSIONS.contains(FilenameUtils.getExtension(fileName));
+	}
 
-		// Try to set by album artist first
-		artist = cleanString(musicFileTag.getFirst(FieldKey.ALBUM_ARTIST));
+	/**
+	 * Collect the extensions of the formats Jaudiotagger reads, which
+	 * include every format the fast tag reader handles
+	 * 
+	 * @return extensions, without the dot
+	 */
+	private static Set<String> musicExtensions() {
+		Set<String> extensions = new HashSet<String>();
+		for (SupportedFileFormat format : SupportedFileFormat.values()) {
+			extensions.add(format.getFilesuffix());
+		}
+		return extensions;
+	}
 
-		// If artist is null, set via the artist tag
-		if (artist.isEmpty() || artist == null) {
-			artist = cleanString(musicFileTag.getFirst(FieldKey.ARTIST));
+	/**
+	 * Read and clean the artist, album, and song title of a music file, with
+	 * Jaudiotagger only if the fast reader cannot handle the file. Nothing
+	 * read from the file is kept beyond the three strings.
+	 * 
+	 * @param musicFile
+	 *            - the source music file
+	 * @param head
+	 *            - the start of the file read ahead of time, or null
+	 * @param metrics
+	 *            - records the time of the tag parse, or null
+	 * @return the cleaned tags, or the reason they could not be read
+	 */
+	private static ParsedTags readTags(File musicFile,
+			FastTagReader.Head head, MigrationMetrics metrics) {
+		// Only music files have tags to read
+		if (!isMusicFile(musicFile.getName())) {
+			return new ParsedTags(ErrorCode.NOT_MUSIC_FILE);
 		}
+		try {
+			long start = System.nanoTime();
+			FastTagReader.Tags tags = FastTagReader.readTags(musicFile, head);
 
-		// Set the album title and song title from the tags
-		albumTitle = cleanString(musicFileTag.getFirst(FieldKey.ALBUM));
-		songTitle = cleanString(musicFileTag.getFirst(FieldKey.TITLE));
+			// Try to set by album artist first
+			String artist = cleanString(tags.getAlbumArtist());
 
-		// If any of these fields are null, return an error message
-		if (artist == null || albumTitle == null || songTitle == null) {
-			errorMessage = "does not have valid tags for migration.";
-			return true;
+			// If artist is empty, set via the artist tag
+			if (artist.isEmpty()) {
+				artist = cleanString(tags.getArtist());
+			}
+			String albumTitle = cleanString(tags.getAlbum());
+			String songTitle = cleanString(tags.getTitle());
+			if (metrics != null) {
+				metrics.record(MigrationMetrics.Stage.TAG_PARSE,
+						System.nanoTime() - start);
+			}
+
+			// An empty tag would leave a folder or file name empty
+			if (artist.isEmpty() || albumTitle.isEmpty() || songTitle.isEmpty()) {
+				return new ParsedTags(ErrorCode.INVALID_TAGS);
+			}
+			return new ParsedTags(artist, albumTitle, songTitle);
+		} catch (Exception | LinkageError e) {
+			// Jaudiotagger fails to link on some runtimes newer than Java 8
+			return new ParsedTags(ErrorCode.UNREADABLE_TAGS);
 		}
-		return false;
 	}
 
 	/**
-	 * Remove invalid path characters from the music file tags
+	 * Remove invalid path characters from the music file tags: double quotes
+	 * become single quotes, and < > : \ / | ? * and . are dropped. Scans the
+	 * string once, and returns it unchanged if it is already clean.
 	 * 
 	 * @param myString
 	 * @return
 	 */
-	private String cleanString(String myString) {
-		String cleanedString = myString.replace("\"", "'");
-		cleanedString = cleanedString.replaceAll("[<>:\\\\/|?*.]", "");
-		return cleanedString;
+	static String cleanString(String myString) {
+		// Find the first character to replace, most tags have none
+		int length = myString.length();
+		int first = 0;
+		while (first < length && isClean(myString.charAt(first))) {
+			first++;
+		}
+		if (first == length) {
+			return myString;
+		}
+
+		// Copy the clean start, then filter the rest
+		char[] cleaned = new char[length];
+		myString.getChars(0, first, cleaned, 0);
+		int cleanedLength = first;
+		for (int i = first; i < length; i++) {
+			char c = myString.charAt(i);
+			if (c == '"') {
+				cleaned[cleanedLength++] = '\'';
+			} else if (isClean(c)) {
+				cleaned[cleanedLength++] = c;
+			}
+		}
+		return new String(cleaned, 0, cleanedLength);
 	}
 
 	/**
-	 * Build the destination file
+	 * Determine whether a character can be kept in a path as it is
+	 * 
+	 * @param c
+	 *            - character of a tag
+	 * @return false for characters cleanString replaces or removes
 	 */
-	private void constructDestination() {
-		String destinationPath = documentsPath + File.separator
-				+ "MusicOrganizerOutput" + File.separator + artist
-				+ File.separator + albumTitle + File.separator + songTitle
-				+ "." + fileExtension;
-		
-		// Instantiate the destination File
-		destinationFile = new File(destinationPath);
+	private static boolean isClean(char c) {
+		switch (c) {
+		case '"':
+		case '<':
+		case '>':
+		case ':':
+		case '\\':
+		case '/':
+		case '|':
+		case '?':
+		case '*':
+		case '.':
+			return false;
+		default:
+			return true;
+		}
 	}
 
 	/**
@@ -151,12 +338,12 @@ public class MusicFile {
 	 */
 	public String toString() {
 		String message = "";
-		if (error) {
-			message = "Error: " + this.absolutePath + " " + errorMessage;
+		if (errorCode != null) {
+			message = "Error: " + this.absolutePath + " " + getErrorMessage();
 		} else {
 			message = "Source file: " + this.absolutePath
 					+ ". Destination file: "
-					+ destinationFile.getAbsolutePath();
+					+ getDestinationFile().getAbsolutePath();
 		}
 		return message;
 	}
@@ -167,21 +354,168 @@ public class MusicFile {
 	 * @return true if successful
 	 */
 	public boolean migrateFile() {
-		if (error) {
+		return migrateFile(TransferStrategy.COPY, new DirectoryCache());
+	}
+
+	/**
+	 * Migrate the music file to the destination with the specified strategy
+	 * 
+	 * @param transferStrategy
+	 *            how the file is placed at the destination
+	 * @param directories
+	 *            destination folders known to exist
+	 * @return true if successful
+	 */
+	public boolean migrateFile(TransferStrategy transferStrategy,
+			DirectoryCache directories) {
+		return migrateFile(transferStrategy, directories, false);
+	}
+
+	/**
+	 * Migrate the music file to the destination with the specified strategy,
+	 * keeping the checksum computed while the bytes were copied
+	 * 
+	 * @param transferStrategy
+	 *            how the file is placed at the destination
+	 * @param directories
+	 *            destination folders known to exist
+	 * @param verify
+	 *            read the copy back and check it before it is published
+	 * @return true if successful
+	 */
+	public boolean migrateFile(TransferStrategy transferStrategy,
+			DirectoryCache directories, boolean verify) {
+		return migrateFile(transferStrategy, directories, verify, null);
+	}
+
+	/**
+	 * Migrate the music file to the destination with the specified strategy,
+	 * claiming the destination in an index of the output tree first, so a
+	 * destination that is taken, even by a name differing only in letter case
+	 * or Unicode normalization, is found without touching the file system
+	 * 
+	 * @param transferStrategy
+	 *            how the file is placed at the destination
+	 * @param directories
+	 *            destination folders known to exist
+	 * @param verify
+	 *            read the copy back and check it before it is published
+	 * @param destinations
+	 *            destinations already taken, or null to rely on the file
+	 *            system alone
+	 * @return true if successful
+	 */
+	public boolean migrateFile(TransferStrategy transferStrategy,
+			DirectoryCache directories, boolean verify,
+			DestinationIndex destinations) {
+		return migrateFile(transferStrategy, directories, verify,
+				destinations, false);
+	}
+
+	/**
+	 * Migrate the music file to the destination with the specified strategy,
+	 * claiming the destination in an index of the output tree first. A taken
+	 * destination of the same size as the source is reported as a duplicate,
+	 * and one of another size as a tag collision. Only when asked are the
+	 * two files also compared byte by byte, which reads both in full.
+	 * 
+	 * @param transferStrategy
+	 *            how the file is placed at the destination
+	 * @param directories
+	 *            destination folders known to exist
+	 * @param verify
+	 *            read the copy back and check it before it is published
+	 * @param destinations
+	 *            destinations already taken, or null to rely on the file
+	 *            system alone
+	 * @param compareContent
+	 *            compare the content of a taken destination with the source
+	 * @return true if successful
+	 */
+	public boolean migrateFile(TransferStrategy transferStrategy,
+			DirectoryCache directories, boolean verify,
+			DestinationIndex destinations, boolean compareContent) {
+		if (errorCode != null) {
 			// The file should not be copied, there was an error
 			return false;
 		} else {
+			File musicFile = new File(absolutePath);
+			boolean claimed = false;
 			try {
-				if (!destinationFile.exists()) {
-					FileUtils.copyFile(musicFile, destinationFile);
+				if (destinations != null) {
+					String holder = destinations.claim(destinationFile);
+					if (holder != null) {
+						// Taken by a file in the output tree or migrated
+						// earlier in this traversal
+						if (isDuplicateOf(musicFile, new File(holder),
+								compareContent)) {
+							errorCode = ErrorCode.DUPLICATE;
+						} else {
+							errorCode = ErrorCode.TAG_COLLISION;
+						}
+						return false;
+					}
+					claimed = true;
+				}
+
+				// The transfer creates the destination atomically, so two
+				// threads migrating songs with the same tags cannot both
+				// migrate to it, and no separate exists() check is needed
+				File destinationDirectory = destinationFile.getParentFile();
+				directories.ensureDirectory(destinationDirectory);
+				try {
+					transfer = transferStrategy.transfer(musicFile,
+							destinationFile, verify, claimed);
+				} catch (NoSuchFileException e) {
+					// The folder was removed after it was cached, try again
+					directories.forget(destinationDirectory);
+					directories.ensureDirectory(destinationDirectory);
+					transfer = transferStrategy.transfer(musicFile,
+							destinationFile, verify, claimed);
+				}
+				if (claimed) {
+					destinations.publish(destinationFile);
+				}
+			} catch (FileAlreadyExistsException e) {
+				// Created outside the traversal since the index was loaded,
+				// the claim now stands for that file
+				if (claimed) {
+					destinations.publish(destinationFile);
+				}
+
+				// Tell a true duplicate apart from a different recording that
+				// happens to have the same tags
+				if (isDuplicateOf(musicFile, destinationFile, compareContent)) {
+					errorCode = ErrorCode.DUPLICATE;
 				} else {
-					throw new Exception();
+					errorCode = ErrorCode.TAG_COLLISION;
+				}
+				return false;
+			} catch (TransferStrategy.SourceNotRemovedException e) {
+				// The copy is in place, so the destination stays claimed
+				if (claimed) {
+					destinations.publish(destinationFile);
+				}
+				errorCode = ErrorCode.SOURCE_NOT_REMOVED;
+				return false;
+			} catch (TransferStrategy.VerificationException e) {
+				// The copy was discarded, the source is untouched
+				if (claimed) {
+					destinations.release(destinationFile);
 				}
+				errorCode = ErrorCode.VERIFICATION_FAILED;
+				return false;
+			} catch (InterruptedException e) {
+				// Stopped while waiting for another file with the destination
+				Thread.currentThread().interrupt();
+				errorCode = ErrorCode.TRANSFER_FAILED;
+				return false;
 			} catch (Exception e) {
-				// Error copying file, set the error flag and return false
-				error = true;
-				errorMessage = "duplicate file. Cannot migrate " + musicFile
-						+ ".";
+				// Error copying file, set the error code and return false
+				if (claimed) {
+					destinations.release(destinationFile);
+				}
+				errorCode = ErrorCode.TRANSFER_FAILED;
 				return false;
 			}
 			return true;
@@ -189,13 +523,185 @@ public class MusicFile {
 
 	}
 
+	/**
+	 * Retrieve the cleaned artist
+	 * 
+	 * @return the artist
+	 */
+	public String getArtist() {
+		return artist;
+	}
+
+	/**
+	 * Retrieve the cleaned album title
+	 * 
+	 * @return the album title
+	 */
+	public String getAlbumTitle() {
+		return albumTitle;
+	}
+
+	/**
+	 * Retrieve the cleaned song title
+	 * 
+	 * @return the song title
+	 */
+	public String getSongTitle() {
+		return songTitle;
+	}
+
+	/**
+	 * Retrieve the absolute path of the source file
+	 * 
+	 * @return the source path
+	 */
+	public String getAbsolutePath() {
+		return absolutePath;
+	}
+
+	/**
+	 * Retrieve the destination file
+	 * 
+	 * @return the destination, or null if the tags could not be read
+	 */
+	public File getDestinationFile() {
+		return destinationFile;
+	}
+
+	/**
+	 * Compare the source file with the file already at the destination by
+	 * size, and byte by byte if they have the same size and the content is to
+	 * be compared
+	 * 
+	 * @param musicFile
+	 *            - the source music file
+	 * @param destinationFile
+	 *            - the file already at the destination
+	 * @param compareContent
+	 *            - also compare the content of files of the same size
+	 * @return true if the files have the same size, and identical content if
+	 *         it was compared
+	 */
+	private static boolean isDuplicateOf(File musicFile, File destinationFile,
+			boolean compareContent) {
+		try {
+			return musicFile.length() == destinationFile.length()
+					&& (!compareContent || FileUtils.contentEquals(musicFile,
+							destinationFile));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Retrieve the checksum of the bytes copied to the destination
+	 * 
+	 * @return the algorithm and checksum, such as crc32c:1a2b3c4d, or null if
+	 *         the file was linked, moved or copied by the kernel
+	 */
+	public String getChecksum() {
+		return transfer != null ? transfer.getChecksum() : null;
+	}
+
+	/**
+	 * Determine whether the bytes of the source were copied to the
+	 * destination
+	 * 
+	 * @return false if the file was linked or renamed into place, or was not
+	 *         migrated
+	 */
+	public boolean isCopied() {
+		return transfer != null && transfer.isCopied();
+	}
+
+	/**
+	 * Retrieve the error message
+	 * 
+	 * @return the error message, or an empty string if there was no error
+	 */
+	public String getErrorMessage() {
+		if (errorCode == null) {
+			return "";
+		}
+		return errorCode.describe(absolutePath, getDestinationPath());
+	}
+
+	/**
+	 * Retrieve the reason the file could not be migrated
+	 * 
+	 * @return the error code, or null if there was no error
+	 */
+	public ErrorCode getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Retrieve the path of the destination file
+	 * 
+	 * @return the destination path, or an empty string if the tags did not
+	 *         yield a destination
+	 */
+	public String getDestinationPath() {
+		if (destinationFile == null) {
+			return "";
+		}
+		return destinationFile.toString();
+	}
+
 	/**
 	 * Retrieve the error flag
 	 * 
 	 * @return true if there was an error
 	 */
 	public boolean isError() {
-		return this.error;
+		return errorCode != null;
+	}
+
+	/**
+	 * Mark the file as not migrated, after a failure outside migrateFile
+	 * 
+	 * @param errorCode
+	 *            - reason the file could not be migrated
+	 */
+	void fail(ErrorCode errorCode) {
+		this.errorCode = errorCode;
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class carrying the cleaned tags of a music file into its
+	 * constructor, or the reason they could not be read.
+	 */
+	private static class ParsedTags {
+
+		/** The cleaned artist, or null */
+		final String artist;
+
+		/** The cleaned album title, or null */
+		final String albumTitle;
+
+		/** The cleaned song title, or null */
+		final String songTitle;
+
+		/** Reason the tags could not be read, or null */
+		final ErrorCode errorCode;
+
+		ParsedTags(String artist, String albumTitle, String songTitle) {
+			this.artist = artist;
+			this.albumTitle = albumTitle;
+			this.songTitle = songTitle;
+			errorCode = null;
+		}
+
+		ParsedTags(ErrorCode errorCode) {
+			artist = null;
+			albumTitle = null;
+			songTitle = null;
+			this.errorCode = errorCode;
+		}
 	}
 
 }
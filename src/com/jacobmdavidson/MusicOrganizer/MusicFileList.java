@@ -5,33 +5,105 @@ import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MusicFileList extends SimpleFileVisitor<Path> {
 
+	/** Number of destination folders listed in a plan report */
+	private static final int PLAN_FOLDERS_REPORTED = 10;
+
+	/** Number of collisions listed in a plan report */
+	private static final int PLAN_COLLISIONS_REPORTED = 100;
+
 	/** Track the number of visible files encountered */
-	private int numVisibleFiles = 0;
+	private final LongAdder numVisibleFiles = new LongAdder();
 
 	/** Track the number of hidden files encountered */
-	private int numHiddenFiles = 0;
+	private final LongAdder numHiddenFiles = new LongAdder();
 
 	/** Track the number of errors */
-	private int numErrors = 0;
+	private final LongAdder numErrors = new LongAdder();
 
 	/** Track the numnber of successful migrations */
-	private int numSuccess = 0;
+	private final LongAdder numSuccess = new LongAdder();
+
+	/** Track the number of files already migrated by an earlier traversal */
+	private final LongAdder numUnchanged = new LongAdder();
+
+	/** Track the number of visible files that are not music or are excluded */
+	private final LongAdder numSkipped = new LongAdder();
+
+	/** Track the number of hidden, excluded and output folders not walked */
+	private final LongAdder numPrunedDirectories = new LongAdder();
+
+	/** Track the total size of the files processed */
+	private final LongAdder bytesProcessed = new LongAdder();
+
+	/** Time the current traversal started, from System.nanoTime */
+	private volatile long startTime = System.nanoTime();
+
+	/** The folder music is organized into */
+	private String outputPath;
+
+	/** Displays the results, the main GUI or a command line report */
+	private MigrationListener gui;
+
+	/** Streams the errors to disk and keeps the most recent ones */
+	private ErrorLog errors;
+
+	/** Execution mode and thread settings for the migration */
+	private OrganizerConfig config;
+
+	/** Parses and copies the files discovered by the current traversal */
+	private MigrationExecutor executor;
+
+	/** Destination folders known to exist during the current traversal */
+	private DirectoryCache directories;
+
+	/** Destinations taken in the output tree, or null */
+	private DestinationIndex destinations;
+
+	/** Tags and destinations indexed by earlier traversals, or null */
+	private ScanIndex scanIndex;
 
-	/** The default documents path */
-	private String documentsPath;
+	/** Journal of the files migrated by this traversal, or null */
+	private MigrationJournal journal;
 
-	/** The main GUI */
-	private GUI gui;
+	/** Set when the journal of an interrupted traversal was found */
+	private boolean resuming;
 
-	/** A list of all errors encountered */
-	private List<String> errors;
+	/** Files replayed from the journal of an interrupted traversal */
+	private int numResumed;
+
+	/** Collects the music files found by the traversal by size */
+	private DuplicateFinder duplicateFinder = new DuplicateFinder();
+
+	/** Groups of music files with identical content */
+	private List<List<Path>> duplicates = Collections.emptyList();
+
+	/** Decides which files and folders of the walk are looked at */
+	private ScanFilter filter;
+
+	/** Folder the current walk started at, never pruned */
+	private Path walkRoot;
+
+	/** Source and destination of every file, when the migration is planned */
+	private MigrationPlan plan;
+
+	/** Times every stage of the migration */
+	private final MigrationMetrics metrics = new MigrationMetrics();
+
+	/** When each walking thread last left visitFile, from System.nanoTime */
+	private final ThreadLocal<long[]> lastVisitEnd = ThreadLocal
+			.withInitial(() -> new long[1]);
 
 	// -----------------------------------------------------------------------
 	// Constructors
@@ -40,64 +112,654 @@ public class MusicFileList extends SimpleFileVisitor<Path> {
 	/**
 	 * Build the MusicFileList
 	 * 
-	 * @param documentsPath
-	 *            default documents path
+	 * @param outputPath
+	 *            folder music is organized into
 	 * @param gui
-	 *            main application GUI
+	 *            displays the results of the migration
+	 * @param config
+	 *            settings for the migration
 	 */
-	public MusicFileList(String documentsPath, GUI gui) {
+	public MusicFileList(String outputPath, MigrationListener gui,
+			OrganizerConfig config) {
 		this.gui = gui;
-		this.documentsPath = documentsPath;
+		this.outputPath = outputPath;
+		this.config = config;
+	}
+
+	/**
+	 * Change where the results of the migration are displayed
+	 * 
+	 * @param gui
+	 *            displays the results of the migration
+	 */
+	public void setListener(MigrationListener gui) {
+		this.gui = gui;
+	}
+
+	/**
+	 * Start the executor that parses and copies the files found by the next
+	 * traversal, using the configured execution mode. Clears the counters and
+	 * metrics, opens the error log, and loads the scan index first, if it is
+	 * enabled. A dry run only reads: it opens no error log or journal, and
+	 * writes nothing under the output folder.
+	 */
+	public void startMigration() {
+		clear();
+		metrics.reset();
+		filter = new ScanFilter(config, outputPath);
+		if (config.isExportMetrics()) {
+			metrics.register();
+		}
+		if (!isDryRun()) {
+			try {
+				errors.open();
+			} catch (IOException e) {
+				System.out.println(e.toString());
+			}
+		}
+		directories = new DirectoryCache();
+		destinations = null;
+		try {
+			if (config.isIndexDestinations()) {
+				// One scan of the output tree loads the folders as well
+				destinations = new DestinationIndex(outputPath);
+				destinations.preload(config.isPreloadDirectories() ? directories
+						: null);
+			} else if (config.isPreloadDirectories()) {
+				directories.preload(Paths.get(outputPath));
+			}
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+		if (config.isUseScanIndex()) {
+			scanIndex = new ScanIndex(Paths.get(outputPath,
+					".MusicOrganizerIndex"));
+			scanIndex.load();
+		} else {
+			scanIndex = null;
+		}
+		resuming = false;
+		numResumed = 0;
+		if (scanIndex != null && config.isUseJournal() && !isDryRun()) {
+			journal = new MigrationJournal(Paths.get(outputPath,
+					".MusicOrganizerJournal"));
+			resuming = journal.exists();
+			if (resuming) {
+				numResumed = journal.replay(scanIndex);
+			}
+			try {
+				journal.open();
+			} catch (IOException e) {
+				System.out.println(e.toString());
+			}
+		} else {
+			journal = null;
+		}
+		if (config.getPlanMode() != PlanMode.OFF) {
+			plan = new MigrationPlan(outputPath, destinations);
+		} else {
+			plan = null;
+		}
+		executor = config.getExecutionMode().createExecutor(this, config);
+	}
+
+	/**
+	 * Walk a folder, handing every music file found to the executor started
+	 * by startMigration. With more than one walk thread, sibling folders are
+	 * listed concurrently.
+	 * 
+	 * @param root
+	 *            folder to walk
+	 * @throws IOException
+	 *             if the walk fails
+	 */
+	public void walk(Path root) throws IOException {
+		walkRoot = root;
+		if (config.getWalkThreads() > 1) {
+			new ParallelWalker(config.getWalkThreads()).walk(root, this);
+		} else {
+			Files.walkFileTree(root, this);
+		}
 	}
 
 	/**
-	 * Update the GUI with the results of the migration attempt
+	 * Wait for the executor to finish the files submitted since the last
+	 * batch, and force the error log and journal to disk, leaving the
+	 * migration started for the next batch. The scan index is saved, and a
+	 * plan executed, only by awaitMigration; until then the journal remembers
+	 * the migrated files.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void awaitBatch() throws InterruptedException {
+		executor.awaitCompletion();
+		executor = config.getExecutionMode().createExecutor(this, config);
+		try {
+			errors.flush();
+			if (journal != null) {
+				journal.flush();
+			}
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+	}
+
+	/**
+	 * Wait for the executor to finish every file submitted by the traversal,
+	 * and migrate the planned files if the plan is to be executed. Then close
+	 * the error log, save the scan index, which makes the journal redundant,
+	 * and look for files with identical content.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void awaitMigration() throws InterruptedException {
+		executor.awaitCompletion();
+		executor = null;
+		if (plan != null && config.getPlanMode() == PlanMode.EXECUTE) {
+			executePlan();
+		}
+		try {
+			errors.close();
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				System.out.println(e.toString());
+			}
+		}
+		if (scanIndex != null && !isDryRun()) {
+			try {
+				scanIndex.save();
+				if (journal != null) {
+					journal.delete();
+				}
+			} catch (IOException e) {
+				System.out.println(e.toString());
+			}
+		}
+		if (isFindingDuplicates()) {
+			duplicates = duplicateFinder.findDuplicates(config
+					.getHashThreads());
+			duplicateFinder.clear();
+		}
+	}
+
+	/**
+	 * Migrate every planned file straight from the plan, without reading any
+	 * tags again, unless the output folder lacks the space the plan requires
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the copies
+	 */
+	private void executePlan() throws InterruptedException {
+		try {
+			long usable = plan.getUsableSpace();
+			if (plan.getRequiredBytes() > usable) {
+				gui.updateListing("Not enough free space: the plan requires "
+						+ plan.getRequiredBytes() + " bytes, " + usable
+						+ " bytes are free. Nothing was migrated.");
+				return;
+			}
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+		CopyScheduler copyScheduler = new CopyScheduler(outputPath, config);
+		for (int row = 0; row < plan.size(); row++) {
+			MusicFile musicFile = plan.getMusicFile(row);
+			long size = plan.getSize(row);
+			long lastModified = plan.getLastModified(row);
+			copyScheduler.schedule(Paths.get(musicFile.getAbsolutePath()),
+					() -> migrate(musicFile, size, lastModified));
+		}
+		copyScheduler.awaitCompletion();
+	}
+
+	/**
+	 * Update the GUI with the results of the migration attempt, listing the
+	 * most recent errors
 	 */
 	public void reportResults() {
-		gui.updateListing("Traversal results:");
-		gui.updateListing("Destination folder: " + documentsPath + File.separator
-				+ "MusicOrganizerOutput" + File.separator);
-		gui.updateListing((numVisibleFiles + numHiddenFiles)
-				+ " total files traversed (" + numVisibleFiles
-				+ " visible, and " + numHiddenFiles + " hidden files)");
-		gui.updateListing(numSuccess + " files successfully migrated");
-		gui.updateListing(numErrors + " errors.");
-		for (String error : errors) {
+		reportSummary();
+		List<String> recentErrors = errors.getRecentErrors();
+		if (recentErrors.size() < getNumErrors()) {
+			gui.updateListing("Showing the last " + recentErrors.size()
+					+ " errors.");
+		}
+		for (String error : recentErrors) {
 			gui.updateListing(error);
 		}
 	}
 
 	/**
-	 * Enumerate the chosen directory, and migrate all music files to the
-	 * destination folder
+	 * Report the totals of the migration attempt, and the groups of files with
+	 * identical content, without listing every error
+	 */
+	public void reportSummary() {
+		gui.updateListing("Traversal results:");
+		gui.updateListing("Destination folder: " + outputPath + File.separator);
+		gui.updateListing((getNumVisibleFiles() + getNumHiddenFiles())
+				+ " total files traversed (" + getNumVisibleFiles()
+				+ " visible, and " + getNumHiddenFiles() + " hidden files)");
+		if (getNumSkipped() > 0) {
+			gui.updateListing(getNumSkipped()
+					+ " files skipped, not music files or excluded");
+		}
+		if (getNumPrunedDirectories() > 0) {
+			gui.updateListing(getNumPrunedDirectories()
+					+ " hidden, excluded or output folders skipped");
+		}
+		if (plan != null) {
+			reportPlan();
+		}
+		if (resuming) {
+			gui.updateListing("Resumed an interrupted traversal, "
+					+ numResumed + " migrated files recovered from its journal");
+		}
+		gui.updateListing(getNumSuccess() + " files successfully migrated");
+		if (getNumUnchanged() > 0) {
+			gui.updateListing(getNumUnchanged()
+					+ " unchanged files already migrated by an earlier traversal");
+		}
+		gui.updateListing(getNumErrors() + " errors.");
+		if (getNumErrors() > 0 && !isDryRun()) {
+			gui.updateListing("Errors are logged to " + errors.getLogFile());
+		}
+		if (isFindingDuplicates()) {
+			gui.updateListing(duplicates.size()
+					+ " groups of music files with identical content.");
+			for (Collection<Path> group : duplicates) {
+				gui.updateListing("Identical content: " + group);
+			}
+		}
+	}
+
+	/**
+	 * Report the migration plan: the files and bytes it would migrate, the
+	 * destinations claimed by more than one file, and the space it requires
+	 */
+	private void reportPlan() {
+		gui.updateListing(plan.size() + " files planned into "
+				+ plan.getFolderCount() + " folders, " + plan.getRequiredBytes()
+				+ " bytes to copy");
+		if (plan.getExistingCount() > 0) {
+			gui.updateListing(plan.getExistingCount()
+					+ " planned destinations already exist");
+		}
+		try {
+			gui.updateListing(plan.getUsableSpace()
+					+ " bytes free in the destination folder");
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+
+		// The folders receiving the most bytes
+		List<Map.Entry<String, Long>> folders = new ArrayList<Map.Entry<String, Long>>(
+				plan.getBytesByFolder().entrySet());
+		folders.sort(Map.Entry.<String, Long> comparingByValue().reversed());
+		for (Map.Entry<String, Long> folder : folders.subList(0,
+				Math.min(PLAN_FOLDERS_REPORTED, folders.size()))) {
+			gui.updateListing("Planned: " + folder.getValue() + " bytes to "
+					+ folder.getKey());
+		}
+		gui.updateListing(plan.getCollisionCount()
+				+ " planned files collide with another destination.");
+		int listed = 0;
+		for (Map.Entry<String, List<String>> collision : plan.getCollisions()
+				.entrySet()) {
+			if (listed++ == PLAN_COLLISIONS_REPORTED) {
+				gui.updateListing("Showing the first "
+						+ PLAN_COLLISIONS_REPORTED + " collisions.");
+				break;
+			}
+			gui.updateListing("Collision at " + collision.getKey() + ": "
+					+ collision.getValue());
+		}
+	}
+
+	/**
+	 * Leave hidden, excluded and output folders out of the walk, so they are
+	 * never listed
+	 */
+	@Override
+	public FileVisitResult preVisitDirectory(Path directory,
+			BasicFileAttributes attr) {
+		if (!directory.equals(walkRoot) && filter.prunes(directory, attr)) {
+			numPrunedDirectories.increment();
+			return FileVisitResult.SKIP_SUBTREE;
+		}
+		return FileVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Enumerate the chosen directory, and hand every visible music file to
+	 * the migration executor. Other files are skipped on their name alone.
 	 */
 	@Override
 	public FileVisitResult visitFile(Path path, BasicFileAttributes attr) {
+		// The walk stage is the time the walker took to find this file
+		long start = System.nanoTime();
+		long[] lastVisit = lastVisitEnd.get();
+		if (lastVisit[0] > metrics.getStartTime()) {
+			metrics.record(MigrationMetrics.Stage.WALK, start - lastVisit[0]);
+		}
 		try {
-			// If the file is visible, attempt to migrate it
-			if (!Files.isHidden(path)) {
-				numVisibleFiles++;
-				File file = new File(path.toUri());
-				MusicFile musicFile = new MusicFile(file, documentsPath);
-				boolean errorCheck = musicFile.migrateFile();
-				if (errorCheck) {
-					numSuccess++;
+			boolean hidden = ScanFilter.isHidden(path, attr);
+			metrics.record(MigrationMetrics.Stage.HIDDEN_CHECK,
+					System.nanoTime() - start);
+
+			// If the file is visible music, queue it for migration
+			if (!hidden) {
+				numVisibleFiles.increment();
+				if (!filter.accepts(path)) {
+					numSkipped.increment();
 				} else {
-					numErrors++;
-					errors.add(musicFile.toString());
+					if (isFindingDuplicates()) {
+						duplicateFinder.addCandidate(path, attr.size());
+					}
+					executor.submit(path, attr);
 				}
 
 				// Otherwise, the file is hidden
 			} else {
-				numHiddenFiles++;
+				numHiddenFiles.increment();
 			}
 		} catch (Exception ex) {
 			System.out.println(ex.toString());
 		}
 
+		lastVisit[0] = System.nanoTime();
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Read the tags of a visible file and build its destination. Tags of files
+	 * that have not changed since the last traversal come from the scan index,
+	 * and files the last traversal already migrated are skipped. Files that
+	 * cannot be migrated are recorded as errors. Safe to call from any thread.
+	 * 
+	 * @param path
+	 *            the file to parse
+	 * @param attr
+	 *            attributes of the file, read by the walk
+	 * @return the parsed music file, or null if there is nothing to migrate
+	 */
+	MusicFile parseFile(Path path, BasicFileAttributes attr) {
+		return parseFile(path, attr, null);
+	}
+
+	/**
+	 * Read the tags of a visible file whose start may already have been read,
+	 * and build its destination. Safe to call from any thread.
+	 * 
+	 * @param path
+	 *            the file to parse
+	 * @param attr
+	 *            attributes of the file, read by the walk
+	 * @param head
+	 *            the start of the file read ahead of time, or null
+	 * @return the parsed music file, or null if there is nothing to migrate
+	 */
+	MusicFile parseFile(Path path, BasicFileAttributes attr,
+			FastTagReader.Head head) {
+		try {
+			MusicFile musicFile;
+			ScanIndex.Entry indexEntry = null;
+			if (scanIndex != null) {
+				indexEntry = scanIndex.lookup(indexKey(path), attr.size(),
+						attr.lastModifiedTime().toMillis());
+			}
+			if (indexEntry == null) {
+				musicFile = new MusicFile(path.toFile(), outputPath, metrics,
+						head);
+			} else if (isStillMigrated(indexEntry)) {
+				numUnchanged.increment();
+				bytesProcessed.add(attr.size());
+				gui.fileProcessed(new MusicFile(path.toFile(), outputPath,
+						indexEntry), MigrationListener.Status.UNCHANGED);
+				return null;
+			} else {
+				long start = System.nanoTime();
+				musicFile = new MusicFile(path.toFile(), outputPath,
+						indexEntry);
+				metrics.record(MigrationMetrics.Stage.DESTINATION_BUILD,
+						System.nanoTime() - start);
+			}
+			if (!musicFile.isError()) {
+				return musicFile;
+			}
+			recordResult(musicFile, false, attr.size());
+		} catch (Exception ex) {
+			recordParseFailure(path, attr, ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Record a file whose tags could not be parsed because of an unexpected
+	 * exception or error, so it is still counted, logged and reported. Safe
+	 * to call from any thread.
+	 * 
+	 * @param path
+	 *            the file that failed
+	 * @param attr
+	 *            attributes of the file, read by the walk
+	 * @param cause
+	 *            what the parse threw
+	 */
+	void recordParseFailure(Path path, BasicFileAttributes attr,
+			Throwable cause) {
+		System.out.println(path + ": " + cause.toString());
+		recordResult(new MusicFile(path.toFile(), ErrorCode.UNREADABLE_TAGS),
+				false, attr.size());
+	}
+
+	/**
+	 * Record a parsed file whose migration failed because of an unexpected
+	 * exception or error, so it is still counted, logged and reported. Safe
+	 * to call from any thread.
+	 * 
+	 * @param musicFile
+	 *            the music file returned by parseFile
+	 * @param attr
+	 *            attributes of the source file, read by the walk
+	 * @param cause
+	 *            what the migration threw
+	 */
+	void recordMigrationFailure(MusicFile musicFile, BasicFileAttributes attr,
+			Throwable cause) {
+		System.out.println(musicFile.getAbsolutePath() + ": "
+				+ cause.toString());
+		musicFile.fail(ErrorCode.TRANSFER_FAILED);
+		recordResult(musicFile, false, attr.size());
+	}
+
+	/**
+	 * Determine whether the tags of a file will be read by the parse stage,
+	 * rather than come from the scan index. Safe to call from any thread.
+	 * 
+	 * @param path
+	 *            a file discovered by the walk
+	 * @param attr
+	 *            attributes of the file, read by the walk
+	 * @return true if the file has changed or was never indexed
+	 */
+	boolean needsTags(Path path, BasicFileAttributes attr) {
+		return scanIndex == null
+				|| scanIndex.lookup(indexKey(path), attr.size(), attr
+						.lastModifiedTime().toMillis()) == null;
+	}
+
+	/**
+	 * Return the key of a source file in the scan index: its absolute path,
+	 * as recorded by migrate
+	 * 
+	 * @param path
+	 *            a file discovered by the walk
+	 * @return the absolute path of the file
+	 */
+	private static String indexKey(Path path) {
+		return path.toAbsolutePath().toString();
+	}
+
+	/**
+	 * Determine whether the traversal only plans the migration, in which case
+	 * nothing is written
+	 * 
+	 * @return true if the plan mode is DRY_RUN
+	 */
+	private boolean isDryRun() {
+		return config.getPlanMode() == PlanMode.DRY_RUN;
+	}
+
+	/**
+	 * Determine whether the traversal looks for files with identical content.
+	 * A dry run does not, since hashing reads every candidate in full.
+	 * 
+	 * @return true if duplicates are found
+	 */
+	private boolean isFindingDuplicates() {
+		return config.isFindDuplicates() && !isDryRun();
+	}
+
+	/**
+	 * Determine whether an indexed file was migrated by an earlier traversal
+	 * and its copy is still in place
+	 * 
+	 * @param indexEntry
+	 *            index entry of an unchanged source file
+	 * @return true if the destination still holds the migrated copy
+	 */
+	private boolean isStillMigrated(ScanIndex.Entry indexEntry) {
+		if (!indexEntry.isMigrated()) {
+			return false;
+		}
+		try {
+			return Files.size(Paths.get(indexEntry.getDestination())) == indexEntry
+					.getSize();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Migrate a parsed music file, or add it to the plan when the migration
+	 * is planned. Safe to call from any thread.
+	 * 
+	 * @param musicFile
+	 *            the music file returned by parseFile
+	 * @param attr
+	 *            attributes of the source file, read by the walk
+	 */
+	void migrate(MusicFile musicFile, BasicFileAttributes attr) {
+		if (plan != null) {
+			plan.add(musicFile, attr.size(), attr.lastModifiedTime()
+					.toMillis());
+		} else {
+			migrate(musicFile, attr.size(), attr.lastModifiedTime().toMillis());
+		}
+	}
+
+	/**
+	 * Migrate a music file, record the outcome, and index and journal its
+	 * tags. Safe to call from any thread.
+	 * 
+	 * @param musicFile
+	 *            the music file to migrate
+	 * @param size
+	 *            size of the source file
+	 * @param lastModified
+	 *            modification time of the source file, in milliseconds
+	 */
+	private void migrate(MusicFile musicFile, long size, long lastModified) {
+		try {
+			long start = System.nanoTime();
+			boolean success = musicFile.migrateFile(
+					config.getTransferStrategy(), directories,
+					config.isVerifyCopies(), destinations,
+					isFindingDuplicates());
+			metrics.record(MigrationMetrics.Stage.COPY, System.nanoTime()
+					- start);
+			if (!success && isInterruptedCopy(musicFile, lastModified)) {
+				// Copied before the interrupted traversal last synced its
+				// journal, the copy is complete and in place
+				success = true;
+				numUnchanged.increment();
+				bytesProcessed.add(size);
+				gui.fileProcessed(musicFile,
+						MigrationListener.Status.UNCHANGED);
+			} else {
+				if (success) {
+					// Linked and renamed files copy no bytes
+					if (musicFile.isCopied()) {
+						metrics.addBytesCopied(size);
+					}
+					if (config.getTransferStrategy() == TransferStrategy.MOVE
+							&& isFindingDuplicates()) {
+						duplicateFinder.moveCandidate(
+								Paths.get(musicFile.getAbsolutePath()),
+								musicFile.getDestinationFile().toPath(), size);
+					}
+				}
+				recordResult(musicFile, success, size);
+			}
+			if (success && journal != null) {
+				journal.record(size, lastModified, musicFile);
+			}
+			if (scanIndex != null) {
+				scanIndex.record(musicFile.getAbsolutePath(), size,
+						lastModified, musicFile, success);
+			}
+		} catch (Exception ex) {
+			System.out.println(ex.toString());
+		}
+	}
+
+	/**
+	 * Determine whether a file found at its destination was copied by an
+	 * interrupted traversal after its journal was last forced to disk. Copies
+	 * are only published once complete, and keep the modification time of
+	 * their source.
+	 * 
+	 * @param musicFile
+	 *            a music file whose destination already exists
+	 * @param lastModified
+	 *            modification time of the source file, in milliseconds
+	 * @return true if the destination is a complete copy of the source
+	 */
+	private boolean isInterruptedCopy(MusicFile musicFile, long lastModified) {
+		return resuming
+				&& musicFile.getErrorCode() == ErrorCode.DUPLICATE
+				&& musicFile.getDestinationFile().lastModified() == lastModified;
+	}
+
+	/**
+	 * Record the outcome of a migration attempt
+	 * 
+	 * @param musicFile
+	 *            the music file that was processed
+	 * @param success
+	 *            true if the file was migrated
+	 * @param size
+	 *            size of the source file
+	 */
+	private void recordResult(MusicFile musicFile, boolean success, long size) {
+		bytesProcessed.add(size);
+		if (success) {
+			numSuccess.increment();
+			gui.fileProcessed(musicFile, MigrationListener.Status.MIGRATED);
+		} else {
+			numErrors.increment();
+			errors.record(musicFile.getErrorCode(),
+					musicFile.getAbsolutePath(), musicFile.getDestinationPath());
+			gui.fileProcessed(musicFile, MigrationListener.Status.FAILED);
+		}
+	}
+
 	/**
 	 * If the enumeration failed for a specific file, prin the results to
 	 * console
@@ -113,20 +775,39 @@ public class MusicFileList extends SimpleFileVisitor<Path> {
 	 * Clear the tracking variables
 	 */
 	public void clear() {
-		numVisibleFiles = 0;
-		numHiddenFiles = 0;
-		numSuccess = 0;
-		numErrors = 0;
+		numVisibleFiles.reset();
+		numHiddenFiles.reset();
+		numSuccess.reset();
+		numErrors.reset();
+		numUnchanged.reset();
+		numSkipped.reset();
+		numPrunedDirectories.reset();
+		bytesProcessed.reset();
+		startTime = System.nanoTime();
+		duplicates = Collections.emptyList();
 
 	}
 
+	/**
+	 * Take a snapshot of the progress of the traversal. Safe to call from any
+	 * thread while the traversal runs, without blocking the workers.
+	 * 
+	 * @return the progress so far
+	 */
+	public ProgressSnapshot getProgress() {
+		return new ProgressSnapshot(numVisibleFiles.sum(),
+				numHiddenFiles.sum(), numSuccess.sum(), numUnchanged.sum(),
+				numErrors.sum(), bytesProcessed.sum(),
+				metrics.getBytesCopied(), System.nanoTime() - startTime);
+	}
+
 	/**
 	 * Return the number of visible files
 	 * 
 	 * @return number of visible files
 	 */
 	public int getNumVisibleFiles() {
-		return numVisibleFiles;
+		return numVisibleFiles.intValue();
 	}
 
 	/**
@@ -135,7 +816,7 @@ public class MusicFileList extends SimpleFileVisitor<Path> {
 	 * @return number of hidden files
 	 */
 	public int getNumHiddenFiles() {
-		return numHiddenFiles;
+		return numHiddenFiles.intValue();
 	}
 
 	/**
@@ -144,7 +825,36 @@ public class MusicFileList extends SimpleFileVisitor<Path> {
 	 * @return number of successful migrations
 	 */
 	public int getNumSuccess() {
-		return numSuccess;
+		return numSuccess.intValue();
+	}
+
+	/**
+	 * Return the number of unchanged files skipped because an earlier
+	 * traversal already migrated them
+	 * 
+	 * @return number of unchanged files
+	 */
+	public int getNumUnchanged() {
+		return numUnchanged.intValue();
+	}
+
+	/**
+	 * Return the number of visible files skipped because they are not music
+	 * files or are excluded
+	 * 
+	 * @return number of skipped files
+	 */
+	public int getNumSkipped() {
+		return numSkipped.intValue();
+	}
+
+	/**
+	 * Return the number of folders left out of the walk
+	 * 
+	 * @return number of pruned folders
+	 */
+	public int getNumPrunedDirectories() {
+		return numPrunedDirectories.intValue();
 	}
 
 	/**
@@ -153,14 +863,43 @@ public class MusicFileList extends SimpleFileVisitor<Path> {
 	 * @return number of errors
 	 */
 	public int getNumErrors() {
-		return numErrors;
+		return numErrors.intValue();
+	}
+
+	/**
+	 * Return the metrics of the current or last traversal
+	 * 
+	 * @return the metrics
+	 */
+	public MigrationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Return the folder music is organized into
+	 * 
+	 * @return the output folder
+	 */
+	String getOutputPath() {
+		return outputPath;
+	}
+
+	/**
+	 * Return the plan of the current or last traversal
+	 * 
+	 * @return the plan, or null if the migration was not planned
+	 */
+	public MigrationPlan getPlan() {
+		return plan;
 	}
 
 	/**
-	 * Initialize the list of errors
+	 * Initialize the error log, which is opened when the migration starts
 	 */
 	public void initializeErrors() {
-		errors = new LinkedList<String>();
+		errors = new ErrorLog(Paths.get(outputPath, ".MusicOrganizerErrors"),
+				config.getErrorLogMegabytes() * 1024L * 1024L,
+				config.getRecentErrors());
 	}
 
 }
@@ -2,9 +2,10 @@ package com.jacobmdavidson.MusicOrganizer;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.nio.file.Files;
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import javax.swing.*;
 
@@ -32,6 +33,9 @@ public class MusicOrganizer implements ActionListener {
 	/** List of music files traversed */
 	private MusicFileList musicFileList;
 
+	/** Settings for the migration */
+	private OrganizerConfig config;
+
 	/** Timer used in updated migration progress */
 	private Timer timer;
 
@@ -46,8 +50,11 @@ public class MusicOrganizer implements ActionListener {
 		this.gui = gui;
 		documentsPath = new JFileChooser().getFileSystemView()
 				.getDefaultDirectory().toString();
-		musicFileList = new MusicFileList(documentsPath, gui);
-		timer = new Timer(100, null);
+		config = OrganizerConfig.fromSystemProperties();
+		musicFileList = new MusicFileList(documentsPath + File.separator
+				+ "MusicOrganizerOutput", gui, config);
+		timer = new Timer(100, this);
+		timer.setInitialDelay(100);
 	}
 
 	// -----------------------------------------------------------------------
@@ -59,10 +66,6 @@ public class MusicOrganizer implements ActionListener {
 	 */
 	public void selectDirectory() {
 
-		// Add an action listener to the timer
-		timer.addActionListener(this);
-		timer.setInitialDelay(100);
-
 		// clear results of any previous traversal
 		gui.resetGUI();
 
@@ -72,18 +75,16 @@ public class MusicOrganizer implements ActionListener {
 		// If a legitimate folder was selected, begin migration
 		if (!basePath.equals("cancelled")) {
 
-			// Initialize the MusicFileList errors linked list
+			// Initialize the MusicFileList error log
 			musicFileList.initializeErrors();
 
 			// Start the timer that will display progress
 			timer.start();
 
 			// Traverse the selected directory, copy music to the destination,
-			// and display the output results
+			// and display the output results. The worker clears the counters
+			// of the previous traversal before it starts.
 			beginTraversal(basePath);
-
-			// timer.stop();
-			musicFileList.clear();
 		} else {
 			// Display that the action was cancelled
 			gui.updateListing("Migration cancelled.");
@@ -125,29 +126,10 @@ public class MusicOrganizer implements ActionListener {
 	 */
 	private void enumerateDirectory(Path path) {
 
-		// Instantiate a SwingWorker that enumerates the directory
-		SwingWorker<Void, Void> mySwingWorker = new SwingWorker<Void, Void>() {
-
-			// Disable the select folder button, and walk the file tree
-			@Override
-			protected Void doInBackground() throws Exception {
-				gui.disableButton();
-				Files.walkFileTree(path, musicFileList);
-				return null;
-			}
-
-			// Enable the select folder button, report the results, stop the
-			// timer, and update the address label with the source folder path
-			// that was enumerated.
-
-			@Override
-			protected void done() {
-				gui.enableButton();
-				musicFileList.reportResults();
-				timer.stop();
-				gui.setAddressLabelText(basePath);
-			}
-		};
+		// Instantiate a SwingWorker that enumerates the directory, and route
+		// the results listing through it
+		TraversalWorker mySwingWorker = new TraversalWorker(path);
+		musicFileList.setListener(mySwingWorker);
 
 		// Execute the SwingWorker
 		mySwingWorker.execute();
@@ -169,8 +151,69 @@ public class MusicOrganizer implements ActionListener {
 	 */
 	@Override
 	public void actionPerformed(ActionEvent e) {
+		ProgressSnapshot progress = musicFileList.getProgress();
+		gui.setAddressLabelText(String.format(
+				"Scanning... %d files successfully copied (%.0f files/s, "
+						+ "%.1f MB/s).", progress.getMigrated(),
+				progress.getFilesPerSecond(),
+				progress.getBytesPerSecond() / (1024 * 1024)));
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
 
-		gui.setAddressLabelText("Scanning... " + musicFileList.getNumSuccess()
-				+ " files successfully copied.");
+	/**
+	 * Inner class that walks the file tree in the background. Lines of the
+	 * results listing are published from the background thread, and Swing
+	 * delivers them to the table in batches on the event dispatch thread, so
+	 * even a listing with many thousands of errors is shown at once.
+	 */
+	class TraversalWorker extends SwingWorker<Void, String> implements
+			MigrationListener {
+
+		/** Directory to enumerate */
+		private Path path;
+
+		TraversalWorker(Path path) {
+			this.path = path;
+		}
+
+		// Disable the select folder button, walk the file tree, wait for the
+		// executor to migrate every file the walk discovered, and report the
+		// results
+		@Override
+		protected Void doInBackground() throws Exception {
+			gui.disableButton();
+			musicFileList.startMigration();
+			try {
+				musicFileList.walk(path);
+			} finally {
+				musicFileList.awaitMigration();
+			}
+			musicFileList.reportResults();
+			return null;
+		}
+
+		// Add a batch of published lines to the table
+		@Override
+		protected void process(List<String> outputs) {
+			gui.updateListing(outputs);
+		}
+
+		// Enable the select folder button, stop the timer, and update the
+		// address label with the source folder path that was enumerated.
+		@Override
+		protected void done() {
+			gui.enableButton();
+			timer.stop();
+			gui.setAddressLabelText(basePath);
+		}
+
+		// Publish a line of the results listing from any thread
+		@Override
+		public void updateListing(String output) {
+			publish(output);
+		}
 	}
 }
\ No newline at end of file
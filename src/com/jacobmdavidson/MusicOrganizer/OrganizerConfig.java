@@ -0,0 +1,783 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * OrganizerConfig class. Holds the tunable settings for a migration. Every
+ * setting has a sensible default, and can be overridden with a system property
+ * of the form -Dmusicorganizer.settingName=value when the application is
+ * launched.
+ */
+public class OrganizerConfig {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Prefix for the system properties that override the defaults */
+	private static final String PROPERTY_PREFIX = "musicorganizer.";
+
+	/** How the files discovered by the walk are parsed and migrated */
+	private ExecutionMode executionMode = ExecutionMode.PIPELINE;
+
+	/** Number of threads listing source folders, 1 for a sequential walk */
+	private int walkThreads = 1;
+
+	/** Number of threads reading tags from the source music files */
+	private int parseThreads = Runtime.getRuntime().availableProcessors();
+
+	/** Copies at once on a drive of unknown kind, such as a network share */
+	private int copyThreads = 2;
+
+	/** Copies at once on a solid state drive */
+	private int ssdCopyThreads = 8;
+
+	/** Copies at once on a spinning disk or USB drive */
+	private int rotationalCopyThreads = 1;
+
+	/** Maximum number of files waiting between two stages of the pipeline */
+	private int queueCapacity = 1024;
+
+	/** Number of files whose start is read ahead of the parse stage, 0 for none */
+	private int prefetchDistance = 16;
+
+	/** Bytes read ahead from the start of each file */
+	private int prefetchBytes = 256 * 1024;
+
+	/** Maximum number of files in flight in the virtual thread mode */
+	private int maxInFlight = 1000;
+
+	/** How music files are placed at their destination */
+	private TransferStrategy transferStrategy = TransferStrategy.COPY;
+
+	/** Read every copy back and check it against the checksum of the copy */
+	private boolean verifyCopies = false;
+
+	/** Load the existing output folders into the directory cache up front */
+	private boolean preloadDirectories = false;
+
+	/** Check destinations against an index of the output tree, case folded */
+	private boolean indexDestinations = true;
+
+	/**
+	 * Report music files with identical content after the traversal. Off by
+	 * default, since it hashes every file sharing its size with another,
+	 * including files the scan index would otherwise skip.
+	 */
+	private boolean findDuplicates = false;
+
+	/** Number of threads hashing files to find identical content */
+	private int hashThreads = Runtime.getRuntime().availableProcessors();
+
+	/** Skip tag parsing for files indexed by an earlier traversal */
+	private boolean useScanIndex = true;
+
+	/** Journal migrated files, so a killed traversal can be resumed */
+	private boolean useJournal = true;
+
+	/** Size at which the error log is rolled over, in megabytes */
+	private int errorLogMegabytes = 16;
+
+	/** Number of recent errors kept in memory for display */
+	private int recentErrors = 1000;
+
+	/** Export the migration metrics over JMX */
+	private boolean exportMetrics = true;
+
+	/** Extensions of the files to migrate */
+	private List<String> extensions = Arrays.asList("mp3", "m4a", "m4p");
+
+	/** Glob patterns of the files and folders to leave out of the walk */
+	private List<String> excludes = new ArrayList<String>();
+
+	/** Whether the migration is planned before any file is copied */
+	private PlanMode planMode = PlanMode.OFF;
+
+	/** How long a watched file must stay unchanged before it is migrated */
+	private int watchSettleMillis = 2000;
+
+	/** Maximum number of watched files migrated in one batch */
+	private int watchBatchSize = 500;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new OrganizerConfig with the default settings
+	 */
+	public OrganizerConfig() {
+	}
+
+	/**
+	 * Create a new OrganizerConfig with the default settings overridden by any
+	 * musicorganizer.* system properties
+	 *
+	 * @return the configuration
+	 */
+	public static OrganizerConfig fromSystemProperties() {
+		OrganizerConfig config = new OrganizerConfig();
+		config.setExecutionMode(enumProperty("executionMode",
+				config.getExecutionMode()));
+		config.setWalkThreads(intProperty("walkThreads",
+				config.getWalkThreads()));
+		config.setParseThreads(intProperty("parseThreads",
+				config.getParseThreads()));
+		config.setCopyThreads(intProperty("copyThreads",
+				config.getCopyThreads()));
+		config.setSsdCopyThreads(intProperty("ssdCopyThreads",
+				config.getSsdCopyThreads()));
+		config.setRotationalCopyThreads(intProperty("rotationalCopyThreads",
+				config.getRotationalCopyThreads()));
+		config.setQueueCapacity(intProperty("queueCapacity",
+				config.getQueueCapacity()));
+		config.setPrefetchDistance(intProperty("prefetchDistance",
+				config.getPrefetchDistance()));
+		config.setPrefetchBytes(intProperty("prefetchBytes",
+				config.getPrefetchBytes()));
+		config.setMaxInFlight(intProperty("maxInFlight",
+				config.getMaxInFlight()));
+		config.setTransferStrategy(enumProperty("transferStrategy",
+				config.getTransferStrategy()));
+		config.setVerifyCopies(booleanProperty("verifyCopies",
+				config.isVerifyCopies()));
+		config.setPreloadDirectories(booleanProperty("preloadDirectories",
+				config.isPreloadDirectories()));
+		config.setIndexDestinations(booleanProperty("indexDestinations",
+				config.isIndexDestinations()));
+		config.setFindDuplicates(booleanProperty("findDuplicates",
+				config.isFindDuplicates()));
+		config.setHashThreads(intProperty("hashThreads",
+				config.getHashThreads()));
+		config.setUseScanIndex(booleanProperty("useScanIndex",
+				config.isUseScanIndex()));
+		config.setUseJournal(booleanProperty("useJournal",
+				config.isUseJournal()));
+		config.setErrorLogMegabytes(intProperty("errorLogMegabytes",
+				config.getErrorLogMegabytes()));
+		config.setRecentErrors(intProperty("recentErrors",
+				config.getRecentErrors()));
+		config.setExportMetrics(booleanProperty("exportMetrics",
+				config.isExportMetrics()));
+		config.setExtensions(listProperty("extensions",
+				config.getExtensions()));
+		config.setExcludes(listProperty("excludes", config.getExcludes()));
+		config.setPlanMode(enumProperty("planMode", config.getPlanMode()));
+		config.setWatchSettleMillis(intProperty("watchSettleMillis",
+				config.getWatchSettleMillis()));
+		config.setWatchBatchSize(intProperty("watchBatchSize",
+				config.getWatchBatchSize()));
+		return config;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Read an integer system property, falling back to the default if it is
+	 * missing or malformed
+	 *
+	 * @param name
+	 *            - setting name, without the musicorganizer. prefix
+	 * @param defaultValue
+	 *            - value to use if the property is not set
+	 * @return the property value
+	 */
+	private static int intProperty(String name, int defaultValue) {
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			System.out.println("Ignoring invalid value for " + PROPERTY_PREFIX
+					+ name + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Read a boolean system property, falling back to the default if it is
+	 * missing
+	 *
+	 * @param name
+	 *            - setting name, without the musicorganizer. prefix
+	 * @param defaultValue
+	 *            - value to use if the property is not set
+	 * @return the property value
+	 */
+	private static boolean booleanProperty(String name, boolean defaultValue) {
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+		if (value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * Read a comma separated list system property, falling back to the
+	 * default if it is missing. Blank entries are dropped.
+	 *
+	 * @param name
+	 *            - setting name, without the musicorganizer. prefix
+	 * @param defaultValue
+	 *            - value to use if the property is not set
+	 * @return the property value
+	 */
+	private static List<String> listProperty(String name,
+			List<String> defaultValue) {
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+		if (value == null) {
+			return defaultValue;
+		}
+		List<String> values = new ArrayList<String>();
+		for (String entry : value.split(",")) {
+			if (!entry.trim().isEmpty()) {
+				values.add(entry.trim());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Read an enum system property by constant name, ignoring case, and
+	 * falling back to the default if it is missing or unknown
+	 *
+	 * @param name
+	 *            - setting name, without the musicorganizer. prefix
+	 * @param defaultValue
+	 *            - value to use if the property is not set
+	 * @return the property value
+	 */
+	private static <E extends Enum<E>> E enumProperty(String name,
+			E defaultValue) {
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim()
+					.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			System.out.println("Ignoring invalid value for " + PROPERTY_PREFIX
+					+ name + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Return the execution mode
+	 *
+	 * @return execution mode
+	 */
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Set the execution mode
+	 *
+	 * @param executionMode
+	 *            - how discovered files are parsed and migrated
+	 */
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	/**
+	 * Return the number of folder listing threads
+	 *
+	 * @return number of walk threads
+	 */
+	public int getWalkThreads() {
+		return walkThreads;
+	}
+
+	/**
+	 * Set the number of folder listing threads. With more than one, sibling
+	 * folders are listed concurrently, which helps on network file systems.
+	 *
+	 * @param walkThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setWalkThreads(int walkThreads) {
+		this.walkThreads = Math.max(1, walkThreads);
+	}
+
+	/**
+	 * Return the number of tag parsing threads
+	 *
+	 * @return number of tag parsing threads
+	 */
+	public int getParseThreads() {
+		return parseThreads;
+	}
+
+	/**
+	 * Set the number of tag parsing threads
+	 *
+	 * @param parseThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setParseThreads(int parseThreads) {
+		this.parseThreads = Math.max(1, parseThreads);
+	}
+
+	/**
+	 * Return the number of copies at once on a drive of unknown kind
+	 *
+	 * @return number of copy threads
+	 */
+	public int getCopyThreads() {
+		return copyThreads;
+	}
+
+	/**
+	 * Set the number of copies at once on a drive of unknown kind, such as a
+	 * network share or any drive outside Linux
+	 *
+	 * @param copyThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setCopyThreads(int copyThreads) {
+		this.copyThreads = Math.max(1, copyThreads);
+	}
+
+	/**
+	 * Return the number of copies at once on a solid state drive
+	 *
+	 * @return number of copy threads
+	 */
+	public int getSsdCopyThreads() {
+		return ssdCopyThreads;
+	}
+
+	/**
+	 * Set the number of copies at once on a solid state drive
+	 *
+	 * @param ssdCopyThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setSsdCopyThreads(int ssdCopyThreads) {
+		this.ssdCopyThreads = Math.max(1, ssdCopyThreads);
+	}
+
+	/**
+	 * Return the number of copies at once on a spinning disk or USB drive
+	 *
+	 * @return number of copy threads
+	 */
+	public int getRotationalCopyThreads() {
+		return rotationalCopyThreads;
+	}
+
+	/**
+	 * Set the number of copies at once on a spinning disk or USB drive
+	 *
+	 * @param rotationalCopyThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setRotationalCopyThreads(int rotationalCopyThreads) {
+		this.rotationalCopyThreads = Math.max(1, rotationalCopyThreads);
+	}
+
+	/**
+	 * Return the capacity of the queues between pipeline stages
+	 *
+	 * @return queue capacity
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Set the capacity of the queues between pipeline stages
+	 *
+	 * @param queueCapacity
+	 *            - queue capacity, at least 1
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * Return the number of files whose start is read ahead of the parse stage
+	 *
+	 * @return prefetch distance, 0 if nothing is read ahead
+	 */
+	public int getPrefetchDistance() {
+		return prefetchDistance;
+	}
+
+	/**
+	 * Set the number of files whose start is read ahead of the parse stage of
+	 * the pipeline
+	 *
+	 * @param prefetchDistance
+	 *            - prefetch distance, 0 to read nothing ahead
+	 */
+	public void setPrefetchDistance(int prefetchDistance) {
+		this.prefetchDistance = Math.max(0, prefetchDistance);
+	}
+
+	/**
+	 * Return the bytes read ahead from the start of each file
+	 *
+	 * @return bytes read ahead
+	 */
+	public int getPrefetchBytes() {
+		return prefetchBytes;
+	}
+
+	/**
+	 * Set the bytes read ahead from the start of each file. Tags that reach
+	 * past them are read from the file as usual.
+	 *
+	 * @param prefetchBytes
+	 *            - bytes read ahead, at least the first read of a tag
+	 */
+	public void setPrefetchBytes(int prefetchBytes) {
+		this.prefetchBytes = Math.max(FastTagReader.HEAD_SIZE, prefetchBytes);
+	}
+
+	/**
+	 * Return the maximum number of files in flight in the virtual thread mode
+	 *
+	 * @return maximum files in flight
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Set the maximum number of files in flight in the virtual thread mode
+	 *
+	 * @param maxInFlight
+	 *            - maximum files in flight, at least 1
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	/**
+	 * Return the transfer strategy
+	 *
+	 * @return transfer strategy
+	 */
+	public TransferStrategy getTransferStrategy() {
+		return transferStrategy;
+	}
+
+	/**
+	 * Set the transfer strategy
+	 *
+	 * @param transferStrategy
+	 *            - how music files are placed at their destination
+	 */
+	public void setTransferStrategy(TransferStrategy transferStrategy) {
+		this.transferStrategy = transferStrategy;
+	}
+
+	/**
+	 * Return whether copies are read back and verified before they are
+	 * published
+	 *
+	 * @return true if copies are verified
+	 */
+	public boolean isVerifyCopies() {
+		return verifyCopies;
+	}
+
+	/**
+	 * Enable or disable verifying copies
+	 *
+	 * @param verifyCopies
+	 *            - true to read every copy back and check its checksum
+	 */
+	public void setVerifyCopies(boolean verifyCopies) {
+		this.verifyCopies = verifyCopies;
+	}
+
+	/**
+	 * Return whether the existing output folders are preloaded
+	 *
+	 * @return true if the directory cache is preloaded
+	 */
+	public boolean isPreloadDirectories() {
+		return preloadDirectories;
+	}
+
+	/**
+	 * Enable or disable preloading the existing output folders
+	 *
+	 * @param preloadDirectories
+	 *            - true to preload the directory cache
+	 */
+	public void setPreloadDirectories(boolean preloadDirectories) {
+		this.preloadDirectories = preloadDirectories;
+	}
+
+	/**
+	 * Return whether destinations are checked against an index of the output
+	 * tree
+	 *
+	 * @return true if the destination index is used
+	 */
+	public boolean isIndexDestinations() {
+		return indexDestinations;
+	}
+
+	/**
+	 * Enable or disable the destination index. Without it, only destinations
+	 * with exactly the same name are found taken, by the file system.
+	 *
+	 * @param indexDestinations
+	 *            - true to load the output tree into a destination index
+	 */
+	public void setIndexDestinations(boolean indexDestinations) {
+		this.indexDestinations = indexDestinations;
+	}
+
+	/**
+	 * Return whether files with identical content are reported
+	 *
+	 * @return true if duplicate content is reported
+	 */
+	public boolean isFindDuplicates() {
+		return findDuplicates;
+	}
+
+	/**
+	 * Enable or disable the duplicate content report
+	 *
+	 * @param findDuplicates
+	 *            - true to report files with identical content
+	 */
+	public void setFindDuplicates(boolean findDuplicates) {
+		this.findDuplicates = findDuplicates;
+	}
+
+	/**
+	 * Return the number of hashing threads
+	 *
+	 * @return number of hashing threads
+	 */
+	public int getHashThreads() {
+		return hashThreads;
+	}
+
+	/**
+	 * Set the number of hashing threads
+	 *
+	 * @param hashThreads
+	 *            - number of threads, at least 1
+	 */
+	public void setHashThreads(int hashThreads) {
+		this.hashThreads = Math.max(1, hashThreads);
+	}
+
+	/**
+	 * Return whether the scan index is used
+	 *
+	 * @return true if unchanged files skip tag parsing
+	 */
+	public boolean isUseScanIndex() {
+		return useScanIndex;
+	}
+
+	/**
+	 * Enable or disable the scan index
+	 *
+	 * @param useScanIndex
+	 *            - true to skip tag parsing for unchanged files
+	 */
+	public void setUseScanIndex(boolean useScanIndex) {
+		this.useScanIndex = useScanIndex;
+	}
+
+	/**
+	 * Return whether migrated files are journaled as they are migrated
+	 *
+	 * @return true if a killed traversal can be resumed
+	 */
+	public boolean isUseJournal() {
+		return useJournal;
+	}
+
+	/**
+	 * Enable or disable the journal of migrated files. The journal is
+	 * replayed into the scan index, so it is only kept while the scan index
+	 * is enabled.
+	 *
+	 * @param useJournal
+	 *            - true to journal migrated files
+	 */
+	public void setUseJournal(boolean useJournal) {
+		this.useJournal = useJournal;
+	}
+
+	/**
+	 * Return the size at which the error log is rolled over
+	 *
+	 * @return error log size, in megabytes
+	 */
+	public int getErrorLogMegabytes() {
+		return errorLogMegabytes;
+	}
+
+	/**
+	 * Set the size at which the error log is rolled over
+	 *
+	 * @param errorLogMegabytes
+	 *            - error log size in megabytes, at least 1
+	 */
+	public void setErrorLogMegabytes(int errorLogMegabytes) {
+		this.errorLogMegabytes = Math.max(1, errorLogMegabytes);
+	}
+
+	/**
+	 * Return the number of recent errors kept for display
+	 *
+	 * @return number of recent errors
+	 */
+	public int getRecentErrors() {
+		return recentErrors;
+	}
+
+	/**
+	 * Set the number of recent errors kept for display
+	 *
+	 * @param recentErrors
+	 *            - number of recent errors, at least 0
+	 */
+	public void setRecentErrors(int recentErrors) {
+		this.recentErrors = Math.max(0, recentErrors);
+	}
+
+	/**
+	 * Return whether the migration metrics are exported over JMX
+	 *
+	 * @return true if the metrics are registered as an MBean
+	 */
+	public boolean isExportMetrics() {
+		return exportMetrics;
+	}
+
+	/**
+	 * Enable or disable exporting the migration metrics over JMX
+	 *
+	 * @param exportMetrics
+	 *            - true to register the metrics as an MBean
+	 */
+	public void setExportMetrics(boolean exportMetrics) {
+		this.exportMetrics = exportMetrics;
+	}
+
+	/**
+	 * Return the extensions of the files to migrate
+	 *
+	 * @return extensions, without the dot
+	 */
+	public List<String> getExtensions() {
+		return extensions;
+	}
+
+	/**
+	 * Set the extensions of the files to migrate. Files with other extensions
+	 * are skipped without being opened. Besides the default mp3, m4a and m4p,
+	 * any format whose tags Jaudiotagger reads can be added, such as flac,
+	 * ogg or wma.
+	 *
+	 * @param extensions
+	 *            - extensions, without the dot
+	 */
+	public void setExtensions(List<String> extensions) {
+		this.extensions = extensions;
+	}
+
+	/**
+	 * Return the patterns of the files and folders left out of the walk
+	 *
+	 * @return glob patterns
+	 */
+	public List<String> getExcludes() {
+		return excludes;
+	}
+
+	/**
+	 * Set the patterns of the files and folders left out of the walk. A
+	 * pattern can match the whole path or just the name.
+	 *
+	 * @param excludes
+	 *            - glob patterns
+	 */
+	public void setExcludes(List<String> excludes) {
+		this.excludes = excludes;
+	}
+
+	/**
+	 * Return whether the migration is planned before any file is copied
+	 *
+	 * @return the plan mode
+	 */
+	public PlanMode getPlanMode() {
+		return planMode;
+	}
+
+	/**
+	 * Set whether the migration is planned before any file is copied. A dry
+	 * run reports the plan without copying anything.
+	 *
+	 * @param planMode
+	 *            - the plan mode
+	 */
+	public void setPlanMode(PlanMode planMode) {
+		this.planMode = planMode;
+	}
+
+	/**
+	 * Return how long a watched file must stay unchanged before it is
+	 * migrated
+	 *
+	 * @return settle time in milliseconds
+	 */
+	public int getWatchSettleMillis() {
+		return watchSettleMillis;
+	}
+
+	/**
+	 * Set how long a watched file must stay unchanged before it is migrated,
+	 * so files still being written are left alone
+	 *
+	 * @param watchSettleMillis
+	 *            - settle time in milliseconds, at least 1
+	 */
+	public void setWatchSettleMillis(int watchSettleMillis) {
+		this.watchSettleMillis = Math.max(1, watchSettleMillis);
+	}
+
+	/**
+	 * Return the maximum number of watched files migrated in one batch
+	 *
+	 * @return batch size
+	 */
+	public int getWatchBatchSize() {
+		return watchBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of watched files migrated in one batch
+	 *
+	 * @param watchBatchSize
+	 *            - batch size, at least 1
+	 */
+	public void setWatchBatchSize(int watchBatchSize) {
+		this.watchBatchSize = Math.max(1, watchBatchSize);
+	}
+
+}
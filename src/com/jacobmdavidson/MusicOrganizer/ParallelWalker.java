@@ -0,0 +1,228 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelWalker class. Walks a file tree like Files.walkFileTree, but lists
+ * sibling folders concurrently on a ForkJoinPool. Every folder is a task that
+ * lists its entries, visits its files, and forks a task for each of its
+ * subfolders, so on network file systems many directory listings are in
+ * flight at once instead of one. The visitor is called from several threads
+ * and must be thread safe. Symbolic links are not followed. A folder is
+ * handed to preVisitDirectory before it is opened, so pruned folders are
+ * never listed.
+ */
+public class ParallelWalker {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Maximum number of threads listing folders */
+	private final int parallelism;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new ParallelWalker
+	 *
+	 * @param parallelism
+	 *            - maximum number of threads listing folders
+	 */
+	public ParallelWalker(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Walk a file tree, and wait until every folder has been listed and
+	 * every file visited
+	 *
+	 * @param root
+	 *            - where the walk starts
+	 * @param visitor
+	 *            - thread safe visitor called for every file and folder
+	 * @throws IOException
+	 *             if the visitor throws one
+	 */
+	public void walk(Path root, FileVisitor<Path> visitor) throws IOException {
+		BasicFileAttributes attr;
+		try {
+			attr = Files.readAttributes(root, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException e) {
+			visitor.visitFileFailed(root, e);
+			return;
+		}
+		if (!attr.isDirectory()) {
+			visitor.visitFile(root, attr);
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism,
+				new WalkThreadFactory(), null, false);
+		try {
+			pool.invoke(new DirectoryTask(root, attr, visitor, new Walk()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class that names the walking threads. Fork join worker threads are
+	 * daemons, so they never keep the application alive.
+	 */
+	static class WalkThreadFactory implements
+			ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+					.newThread(pool);
+			thread.setName("MusicOrganizer-walk-" + thread.getPoolIndex());
+			return thread;
+		}
+	}
+
+	/**
+	 * Inner class holding the state shared by the tasks of one walk.
+	 */
+	static class Walk {
+
+		/** Set once the visitor returns TERMINATE */
+		volatile boolean terminated;
+	}
+
+	/**
+	 * Inner class that visits one folder, forks a task for each subfolder,
+	 * and finishes the folder once they have all completed.
+	 */
+	static class DirectoryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The folder */
+		private final Path directory;
+
+		/** Attributes of the folder, read by the parent task */
+		private final BasicFileAttributes attr;
+
+		/** Called for every file and folder */
+		private final FileVisitor<Path> visitor;
+
+		/** State shared by the tasks of the walk */
+		private final Walk walk;
+
+		DirectoryTask(Path directory, BasicFileAttributes attr,
+				FileVisitor<Path> visitor, Walk walk) {
+			this.directory = directory;
+			this.attr = attr;
+			this.visitor = visitor;
+			this.walk = walk;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (walk.terminated
+						|| !proceed(visitor.preVisitDirectory(directory, attr))) {
+					return;
+				}
+				List<DirectoryTask> subfolders = new ArrayList<DirectoryTask>();
+				IOException failure = null;
+				try (DirectoryStream<Path> entries = Files
+						.newDirectoryStream(directory)) {
+					for (Path entry : entries) {
+						if (walk.terminated || !visitEntry(entry, subfolders)) {
+							break;
+						}
+					}
+				} catch (DirectoryIteratorException e) {
+					failure = e.getCause();
+				} catch (IOException e) {
+					// The folder could not be opened, report it like a file
+					proceed(visitor.visitFileFailed(directory, e));
+					return;
+				}
+				for (DirectoryTask subfolder : subfolders) {
+					subfolder.join();
+				}
+				if (!walk.terminated) {
+					proceed(visitor.postVisitDirectory(directory, failure));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Visit a file, or fork a task for a subfolder
+		 *
+		 * @param entry
+		 *            - entry of the folder
+		 * @param subfolders
+		 *            - receives the forked tasks
+		 * @return false to skip the remaining entries of the folder
+		 * @throws IOException
+		 *             if the visitor throws one
+		 */
+		private boolean visitEntry(Path entry, List<DirectoryTask> subfolders)
+				throws IOException {
+			BasicFileAttributes entryAttr;
+			try {
+				entryAttr = Files.readAttributes(entry,
+						BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			} catch (IOException e) {
+				return proceed(visitor.visitFileFailed(entry, e));
+			}
+			if (entryAttr.isDirectory()) {
+				DirectoryTask subfolder = new DirectoryTask(entry, entryAttr,
+						visitor, walk);
+				subfolder.fork();
+				subfolders.add(subfolder);
+				return true;
+			}
+			return proceed(visitor.visitFile(entry, entryAttr));
+		}
+
+		/**
+		 * Act on the result of a visitor method
+		 *
+		 * @param result
+		 *            - what the visitor asked for
+		 * @return true to carry on with the folder, false to skip the rest
+		 */
+		private boolean proceed(FileVisitResult result) {
+			if (result == FileVisitResult.TERMINATE) {
+				walk.terminated = true;
+			}
+			return result == FileVisitResult.CONTINUE;
+		}
+	}
+
+}
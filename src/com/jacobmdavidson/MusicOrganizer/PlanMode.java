@@ -0,0 +1,17 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * Whether a traversal plans the migration before any file is copied.
+ */
+public enum PlanMode {
+
+	/** Migrate every file as soon as its tags are read */
+	OFF,
+
+	/** Build and report the migration plan, without copying anything */
+	DRY_RUN,
+
+	/** Build and report the migration plan, then migrate from the plan */
+	EXECUTE
+
+}
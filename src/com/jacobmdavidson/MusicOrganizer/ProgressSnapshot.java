@@ -0,0 +1,196 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+/**
+ * ProgressSnapshot class. An immutable view of the progress of a traversal at
+ * one moment. A snapshot can be taken from any thread while the traversal
+ * runs, and handed to another thread without further synchronization.
+ */
+public final class ProgressSnapshot {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Nanoseconds in a second */
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	/** Number of visible files found by the walk */
+	private final long visibleFiles;
+
+	/** Number of hidden files found by the walk */
+	private final long hiddenFiles;
+
+	/** Number of files migrated */
+	private final long migrated;
+
+	/** Number of files already migrated by an earlier traversal */
+	private final long unchanged;
+
+	/** Number of files that could not be migrated */
+	private final long errors;
+
+	/** Total size of the files processed so far */
+	private final long bytesProcessed;
+
+	/** Total size of the files copied so far, leaving out linked files */
+	private final long bytesCopied;
+
+	/** Time since the traversal started, in nanoseconds */
+	private final long elapsedNanos;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new ProgressSnapshot
+	 *
+	 * @param visibleFiles
+	 *            - number of visible files found by the walk
+	 * @param hiddenFiles
+	 *            - number of hidden files found by the walk
+	 * @param migrated
+	 *            - number of files migrated
+	 * @param unchanged
+	 *            - number of files already migrated by an earlier traversal
+	 * @param errors
+	 *            - number of files that could not be migrated
+	 * @param bytesProcessed
+	 *            - total size of the files processed so far
+	 * @param bytesCopied
+	 *            - total size of the files copied so far
+	 * @param elapsedNanos
+	 *            - time since the traversal started, in nanoseconds
+	 */
+	public ProgressSnapshot(long visibleFiles, long hiddenFiles, long migrated,
+			long unchanged, long errors, long bytesProcessed, long bytesCopied,
+			long elapsedNanos) {
+		this.visibleFiles = visibleFiles;
+		this.hiddenFiles = hiddenFiles;
+		this.migrated = migrated;
+		this.unchanged = unchanged;
+		this.errors = errors;
+		this.bytesProcessed = bytesProcessed;
+		this.bytesCopied = bytesCopied;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Return the number of visible files found by the walk
+	 *
+	 * @return number of visible files
+	 */
+	public long getVisibleFiles() {
+		return visibleFiles;
+	}
+
+	/**
+	 * Return the number of hidden files found by the walk
+	 *
+	 * @return number of hidden files
+	 */
+	public long getHiddenFiles() {
+		return hiddenFiles;
+	}
+
+	/**
+	 * Return the number of files migrated
+	 *
+	 * @return number of files migrated
+	 */
+	public long getMigrated() {
+		return migrated;
+	}
+
+	/**
+	 * Return the number of files already migrated by an earlier traversal
+	 *
+	 * @return number of unchanged files
+	 */
+	public long getUnchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * Return the number of files that could not be migrated
+	 *
+	 * @return number of errors
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Return the number of files whose outcome is known
+	 *
+	 * @return number of processed files
+	 */
+	public long getFilesProcessed() {
+		return migrated + unchanged + errors;
+	}
+
+	/**
+	 * Return the total size of the files processed so far
+	 *
+	 * @return bytes processed
+	 */
+	public long getBytesProcessed() {
+		return bytesProcessed;
+	}
+
+	/**
+	 * Return the total size of the files copied so far. Files linked or
+	 * renamed into place, already migrated, or that failed are left out.
+	 *
+	 * @return bytes copied
+	 */
+	public long getBytesCopied() {
+		return bytesCopied;
+	}
+
+	/**
+	 * Return the time since the traversal started
+	 *
+	 * @return elapsed time, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Return the average number of files processed per second
+	 *
+	 * @return files per second
+	 */
+	public double getFilesPerSecond() {
+		return perSecond(getFilesProcessed());
+	}
+
+	/**
+	 * Return the average number of bytes copied per second
+	 *
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(bytesCopied);
+	}
+
+	/**
+	 * Divide an amount by the elapsed time
+	 *
+	 * @param amount
+	 *            - amount processed since the traversal started
+	 * @return amount per second
+	 */
+	private double perSecond(long amount) {
+		if (elapsedNanos <= 0) {
+			return 0;
+		}
+		return amount * NANOS_PER_SECOND / elapsedNanos;
+	}
+
+}
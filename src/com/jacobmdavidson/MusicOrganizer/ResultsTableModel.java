@@ -0,0 +1,77 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * ResultsTableModel class. Single column table model for the results output,
+ * backed by a plain array of row strings. Rows are appended in batches, with
+ * one change event per batch, and the JTable only ever asks for the rows it
+ * is painting, so a listing of any length stays responsive.
+ */
+public class ResultsTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Name of the only column */
+	private static final String COLUMN_NAME = "Output";
+
+	/** The rows, only the first rowCount entries are used */
+	private String[] rows = new String[1024];
+
+	/** Number of rows in the table */
+	private int rowCount = 0;
+
+	/**
+	 * Append a batch of rows, and notify the table once
+	 *
+	 * @param newRows
+	 *            - rows to append
+	 */
+	public void addRows(List<String> newRows) {
+		if (newRows.isEmpty()) {
+			return;
+		}
+		int firstRow = rowCount;
+		if (rowCount + newRows.size() > rows.length) {
+			rows = Arrays.copyOf(rows, Math.max(rows.length * 2, rowCount
+					+ newRows.size()));
+		}
+		for (String row : newRows) {
+			rows[rowCount++] = row;
+		}
+		fireTableRowsInserted(firstRow, rowCount - 1);
+	}
+
+	/**
+	 * Remove every row
+	 */
+	public void clear() {
+		rows = new String[1024];
+		rowCount = 0;
+		fireTableDataChanged();
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return 1;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMN_NAME;
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		return rows[row];
+	}
+
+}
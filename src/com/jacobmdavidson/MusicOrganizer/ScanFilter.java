@@ -0,0 +1,144 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ScanFilter class. Decides which paths found by the walk are worth a closer
+ * look, using only the path and the attributes the walk already read. Files
+ * are matched on the extension of their name before any object is built for
+ * them, and hidden, excluded and output folders are pruned before they are
+ * listed.
+ */
+public class ScanFilter {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Extensions of the files to migrate, without the dot */
+	private final Set<String> extensions;
+
+	/** Paths or names of the files and folders to leave out */
+	private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+
+	/** The folder music is organized into, never scanned */
+	private final Path outputPath;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new ScanFilter
+	 *
+	 * @param config
+	 *            - the extensions and exclude patterns
+	 * @param outputPath
+	 *            - folder music is organized into
+	 */
+	public ScanFilter(OrganizerConfig config, String outputPath) {
+		extensions = new HashSet<String>(config.getExtensions());
+		FileSystem fileSystem = FileSystems.getDefault();
+		for (String exclude : config.getExcludes()) {
+			excludes.add(fileSystem.getPathMatcher("glob:" + exclude));
+		}
+		this.outputPath = Paths.get(outputPath).toAbsolutePath().normalize();
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Determine whether a visible file should be migrated
+	 *
+	 * @param file
+	 *            - file found by the walk
+	 * @return true if it has a music file extension and is not excluded
+	 */
+	public boolean accepts(Path file) {
+		return hasMusicExtension(file) && !isExcluded(file);
+	}
+
+	/**
+	 * Determine whether a folder should be left out of the walk
+	 *
+	 * @param directory
+	 *            - folder found by the walk
+	 * @param attr
+	 *            - attributes of the folder, read by the walk
+	 * @return true if the folder is hidden, excluded or the output folder
+	 */
+	public boolean prunes(Path directory, BasicFileAttributes attr) {
+		return isHidden(directory, attr) || isExcluded(directory)
+				|| directory.toAbsolutePath().normalize().equals(outputPath);
+	}
+
+	/**
+	 * Determine whether the name of a file ends with one of the extensions
+	 *
+	 * @param file
+	 *            - the file
+	 * @return true if the extension is one of the music file extensions
+	 */
+	private boolean hasMusicExtension(Path file) {
+		Path name = file.getFileName();
+		if (name == null) {
+			return false;
+		}
+		String fileName = name.toString();
+		int dot = fileName.lastIndexOf('.');
+		return dot >= 0 && extensions.contains(fileName.substring(dot + 1));
+	}
+
+	/**
+	 * Determine whether a path, or its name, matches an exclude pattern
+	 *
+	 * @param path
+	 *            - file or folder found by the walk
+	 * @return true if the path is excluded
+	 */
+	private boolean isExcluded(Path path) {
+		if (excludes.isEmpty()) {
+			return false;
+		}
+		Path name = path.getFileName();
+		for (PathMatcher exclude : excludes) {
+			if (exclude.matches(path) || (name != null && exclude.matches(name))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether a file or folder is hidden without another file
+	 * system call. Matches Files.isHidden: on Windows the hidden attribute is
+	 * part of the attributes the walk read, elsewhere hidden names start with
+	 * a dot.
+	 *
+	 * @param path
+	 *            - file or folder found by the walk
+	 * @param attr
+	 *            - attributes of the path, read by the walk
+	 * @return true if the path is hidden
+	 */
+	public static boolean isHidden(Path path, BasicFileAttributes attr) {
+		if (attr instanceof DosFileAttributes) {
+			return ((DosFileAttributes) attr).isHidden();
+		}
+		Path name = path.getFileName();
+		return name != null && name.toString().startsWith(".");
+	}
+
+}
@@ -0,0 +1,278 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ScanIndex class. An on-disk index of the music files seen by earlier
+ * traversals, keyed by source path. Each entry remembers the size and
+ * modification time of the source file, the artist, album and song title read
+ * from its tags, the destination that was chosen, and whether the file was
+ * migrated. A later traversal only needs to read the tags of files that are
+ * new or have changed since they were indexed.
+ */
+public class ScanIndex {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Identifies an index file */
+	private static final int MAGIC = 0x4D4F4958;
+
+	/** Version of the index file format */
+	private static final int VERSION = 1;
+
+	/** The index file */
+	private Path indexFile;
+
+	/** Indexed entries, keyed by absolute source path */
+	private Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** Set once the index has been changed since it was loaded */
+	private volatile boolean modified = false;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new, empty ScanIndex stored in the specified file
+	 *
+	 * @param indexFile
+	 *            - file the index is loaded from and saved to
+	 */
+	public ScanIndex(Path indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Load the entries saved by an earlier traversal. A missing or unreadable
+	 * index is treated as empty.
+	 */
+	public void load() {
+		entries.clear();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				System.out.println("Ignoring unrecognized index " + indexFile);
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String sourcePath = in.readUTF();
+				entries.put(sourcePath, new Entry(in.readLong(), in.readLong(),
+						in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+						in.readBoolean()));
+			}
+		} catch (NoSuchFileException e) {
+			// First traversal, nothing indexed yet
+		} catch (IOException e) {
+			System.out.println("Ignoring damaged index " + indexFile + ": "
+					+ e.toString());
+			entries.clear();
+		}
+		modified = false;
+	}
+
+	/**
+	 * Save the index if it changed. The entries are written to a temporary
+	 * file which then replaces the index, so a crash never leaves a partially
+	 * written index behind.
+	 *
+	 * @throws IOException
+	 *             if the index cannot be written
+	 */
+	public void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		Files.createDirectories(indexFile.getParent());
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName()
+				+ ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			// Copy the entries first, the count must match what is written
+			Map<String, Entry> snapshot = new HashMap<String, Entry>(
+					entries);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> mapEntry : snapshot.entrySet()) {
+				Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				out.writeUTF(entry.artist);
+				out.writeUTF(entry.albumTitle);
+				out.writeUTF(entry.songTitle);
+				out.writeUTF(entry.destination);
+				out.writeBoolean(entry.migrated);
+			}
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		modified = false;
+	}
+
+	/**
+	 * Return the entry for a source file, if the file has not changed since it
+	 * was indexed
+	 *
+	 * @param sourcePath
+	 *            - absolute path of the source file
+	 * @param size
+	 *            - current size of the source file
+	 * @param lastModified
+	 *            - current modification time of the source file, in
+	 *            milliseconds
+	 * @return the entry, or null if the file is new or has changed
+	 */
+	public Entry lookup(String sourcePath, long size, long lastModified) {
+		Entry entry = entries.get(sourcePath);
+		if (entry == null || entry.size != size
+				|| entry.lastModified != lastModified) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Index the tags and destination of a source file
+	 *
+	 * @param sourcePath
+	 *            - absolute path of the source file
+	 * @param size
+	 *            - size of the source file
+	 * @param lastModified
+	 *            - modification time of the source file, in milliseconds
+	 * @param musicFile
+	 *            - the parsed music file
+	 * @param migrated
+	 *            - true if the file was migrated to its destination
+	 */
+	public void record(String sourcePath, long size, long lastModified,
+			MusicFile musicFile, boolean migrated) {
+		Entry entry = new Entry(size, lastModified, musicFile.getArtist(),
+				musicFile.getAlbumTitle(), musicFile.getSongTitle(), musicFile
+						.getDestinationFile().getAbsolutePath(), migrated);
+		Entry previous = entries.put(sourcePath, entry);
+		if (!entry.equals(previous)) {
+			modified = true;
+		}
+	}
+
+	/**
+	 * Index an entry replayed from the journal of an interrupted traversal
+	 *
+	 * @param sourcePath
+	 *            - absolute path of the source file
+	 * @param entry
+	 *            - the entry
+	 */
+	void record(String sourcePath, Entry entry) {
+		entries.put(sourcePath, entry);
+		modified = true;
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class holding what was learned about one source file.
+	 */
+	public static class Entry {
+
+		/** Size of the source file */
+		private final long size;
+
+		/** Modification time of the source file, in milliseconds */
+		private final long lastModified;
+
+		/** Cleaned artist */
+		private final String artist;
+
+		/** Cleaned album title */
+		private final String albumTitle;
+
+		/** Cleaned song title */
+		private final String songTitle;
+
+		/** Absolute path of the chosen destination */
+		private final String destination;
+
+		/** True if the file was migrated to the destination */
+		private final boolean migrated;
+
+		Entry(long size, long lastModified, String artist, String albumTitle,
+				String songTitle, String destination, boolean migrated) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.artist = artist;
+			this.albumTitle = albumTitle;
+			this.songTitle = songTitle;
+			this.destination = destination;
+			this.migrated = migrated;
+		}
+
+		public String getArtist() {
+			return artist;
+		}
+
+		public String getAlbumTitle() {
+			return albumTitle;
+		}
+
+		public String getSongTitle() {
+			return songTitle;
+		}
+
+		public String getDestination() {
+			return destination;
+		}
+
+		public boolean isMigrated() {
+			return migrated;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Entry)) {
+				return false;
+			}
+			Entry entry = (Entry) other;
+			return size == entry.size && lastModified == entry.lastModified
+					&& migrated == entry.migrated
+					&& artist.equals(entry.artist)
+					&& albumTitle.equals(entry.albumTitle)
+					&& songTitle.equals(entry.songTitle)
+					&& destination.equals(entry.destination);
+		}
+
+		@Override
+		public int hashCode() {
+			return destination.hashCode();
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * SequentialExecutor class. Parses and migrates every file on the thread that
+ * walks the directory, one after another.
+ */
+public class SequentialExecutor implements MigrationExecutor {
+
+	/** Receives the result of every migration attempt */
+	private MusicFileList musicFileList;
+
+	/**
+	 * Create a new SequentialExecutor
+	 *
+	 * @param musicFileList
+	 *            - receives the result of every migration attempt
+	 */
+	public SequentialExecutor(MusicFileList musicFileList) {
+		this.musicFileList = musicFileList;
+	}
+
+	/**
+	 * Parse and migrate a file. Whatever the file throws is recorded as its
+	 * failure, so one bad file does not stop the walk.
+	 */
+	@Override
+	public void submit(Path path, BasicFileAttributes attr) {
+		MusicFile musicFile = null;
+		try {
+			musicFile = musicFileList.parseFile(path, attr);
+			if (musicFile != null) {
+				musicFileList.migrate(musicFile, attr);
+			}
+		} catch (Throwable t) {
+			if (musicFile == null) {
+				musicFileList.recordParseFailure(path, attr, t);
+			} else {
+				musicFileList.recordMigrationFailure(musicFile, attr, t);
+			}
+		}
+	}
+
+	@Override
+	public void awaitCompletion() {
+		// Nothing is ever left in flight
+	}
+
+}
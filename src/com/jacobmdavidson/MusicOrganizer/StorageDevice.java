@@ -0,0 +1,196 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * StorageDevice class. A drive that music files are read from or copied to,
+ * identified by its file store, and the number of copies it can serve at once.
+ * On Linux the kind of drive is read from /sys/class/block: solid state drives
+ * take many concurrent copies, while spinning disks and USB drives only take
+ * one or two before their heads or bus start thrashing. Other drives get the
+ * default copy limit.
+ */
+public class StorageDevice {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Where Linux describes its block devices */
+	private static final Path SYS_BLOCK = Paths.get("/sys/class/block");
+
+	/**
+	 * The kinds of drive, which decide how many copies a drive serves at once
+	 */
+	public enum Kind {
+
+		/** A solid state drive, limited by ssdCopyThreads */
+		SOLID_STATE,
+
+		/** A spinning disk, limited by rotationalCopyThreads */
+		ROTATIONAL,
+
+		/** A drive on a USB bus, limited by rotationalCopyThreads */
+		USB,
+
+		/** A network share or other drive, limited by copyThreads */
+		UNKNOWN
+	}
+
+	/** Name of the file store */
+	private final String name;
+
+	/** Kind of drive */
+	private final Kind kind;
+
+	/** Maximum number of copies reading or writing the drive at once */
+	private final int limit;
+
+	/** Number of copies reading or writing the drive, guarded by the scheduler */
+	int active;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new StorageDevice for a file store, detecting its kind
+	 *
+	 * @param store
+	 *            - the file store
+	 * @param config
+	 *            - the copy limit of each kind of drive
+	 */
+	public StorageDevice(FileStore store, OrganizerConfig config) {
+		this(store.name(), detectKind(store), config);
+	}
+
+	/**
+	 * Create a new StorageDevice of a known kind
+	 *
+	 * @param name
+	 *            - name of the drive
+	 * @param kind
+	 *            - kind of drive
+	 * @param config
+	 *            - the copy limit of each kind of drive
+	 */
+	StorageDevice(String name, Kind kind, OrganizerConfig config) {
+		this.name = name;
+		this.kind = kind;
+		switch (kind) {
+		case SOLID_STATE:
+			limit = config.getSsdCopyThreads();
+			break;
+		case ROTATIONAL:
+		case USB:
+			limit = config.getRotationalCopyThreads();
+			break;
+		default:
+			limit = config.getCopyThreads();
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Return the name of the file store
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the kind of drive
+	 *
+	 * @return the kind
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Return the maximum number of copies reading or writing the drive at once
+	 *
+	 * @return the copy limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + kind + ", " + limit + " copies)";
+	}
+
+	/**
+	 * Find the file store of a path that may not exist yet, such as an output
+	 * folder, from its nearest existing ancestor
+	 *
+	 * @param path
+	 *            - the path
+	 * @return the file store the path is, or would be, on
+	 * @throws IOException
+	 *             if no ancestor exists or the file store cannot be read
+	 */
+	public static FileStore findFileStore(Path path) throws IOException {
+		Path existing = path.toAbsolutePath();
+		while (existing != null && !Files.exists(existing)) {
+			existing = existing.getParent();
+		}
+		if (existing == null) {
+			throw new IOException("No existing folder for " + path);
+		}
+		return Files.getFileStore(existing);
+	}
+
+	/**
+	 * Detect the kind of drive behind a file store. File stores that are not
+	 * a Linux block device, or whose device cannot be read, are of unknown
+	 * kind.
+	 *
+	 * @param store
+	 *            - the file store
+	 * @return the kind of drive
+	 */
+	private static Kind detectKind(FileStore store) {
+		if (!store.name().startsWith("/dev/")) {
+			return Kind.UNKNOWN;
+		}
+		try {
+			// Resolves device mapper links such as /dev/mapper/root to dm-0
+			Path device = Paths.get(store.name()).toRealPath();
+			Path block = SYS_BLOCK.resolve(device.getFileName().toString())
+					.toRealPath();
+			if (block.toString().contains("/usb")) {
+				return Kind.USB;
+			}
+
+			// A partition has no queue of its own, its disk has
+			Path queue = block.resolve("queue");
+			if (!Files.isDirectory(queue)) {
+				queue = block.getParent().resolve("queue");
+			}
+			List<String> rotational = Files.readAllLines(
+					queue.resolve("rotational"), StandardCharsets.US_ASCII);
+			if (rotational.isEmpty()) {
+				return Kind.UNKNOWN;
+			}
+			return "1".equals(rotational.get(0).trim()) ? Kind.ROTATIONAL
+					: Kind.SOLID_STATE;
+		} catch (IOException | RuntimeException e) {
+			return Kind.UNKNOWN;
+		}
+	}
+
+}
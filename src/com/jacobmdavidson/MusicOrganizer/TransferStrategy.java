@@ -0,0 +1,550 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+/**
+ * The ways a music file can be placed at its destination. Every strategy
+ * creates the destination atomically, and fails with a
+ * FileAlreadyExistsException if it already exists, so two threads can never
+ * both migrate to the same destination. Copies are written to a hidden
+ * temporary file next to the destination, which only takes the name of the
+ * destination once it is complete, so a migration that is killed never leaves
+ * a partially written song behind. Bytes streamed through the JVM are
+ * checksummed in the same pass, and the copy can be verified by reading it
+ * back once, without reading the source a second time.
+ */
+public enum TransferStrategy {
+
+	/** Stream the bytes through a buffer in user space */
+	COPY {
+		@Override
+		public Transfer transfer(File source, File destination,
+				boolean verify, boolean claimed) throws IOException {
+			Path destinationPath = destination.toPath();
+			checkAvailable(destinationPath, claimed);
+			return Transfer.copied(checkedCopy(source.toPath(),
+					destinationPath, verify));
+		}
+	},
+
+	/**
+	 * Copy with FileChannel.transferTo, letting the kernel move the bytes. The
+	 * bytes never reach the JVM, so there is no checksum. A verified copy is
+	 * streamed like COPY instead, so the source is still only read once.
+	 */
+	ZERO_COPY {
+		@Override
+		public Transfer transfer(File source, File destination,
+				boolean verify, boolean claimed) throws IOException {
+			return Transfer.copied(kernelCopy(source.toPath(), destination
+					.toPath(), verify, claimed));
+		}
+	},
+
+	/**
+	 * Hard link the destination to the source when both are on the same file
+	 * store, so no bytes are copied and no space is used. Falls back to a zero
+	 * copy across file stores.
+	 */
+	HARD_LINK {
+		@Override
+		public Transfer transfer(File source, File destination,
+				boolean verify, boolean claimed) throws IOException {
+			Path sourcePath = source.toPath();
+			Path destinationPath = destination.toPath();
+			if (Files.getFileStore(sourcePath).equals(
+					Files.getFileStore(destinationPath.getParent()))) {
+				Files.createLink(destinationPath, sourcePath);
+				return Transfer.IN_PLACE;
+			}
+			return Transfer.copied(kernelCopy(sourcePath, destinationPath,
+					verify, claimed));
+		}
+	},
+
+	/**
+	 * Build a virtual library: the destination is a symbolic link to the
+	 * absolute path of the source
+	 */
+	SYMBOLIC_LINK {
+		@Override
+		public Transfer transfer(File source, File destination,
+				boolean verify, boolean claimed) throws IOException {
+			Files.createSymbolicLink(destination.toPath(), source.toPath()
+					.toAbsolutePath());
+			return Transfer.IN_PLACE;
+		}
+	},
+
+	/**
+	 * Move the source to the destination. On the same file store only the
+	 * name changes, so no bytes are copied. Across file stores the source is
+	 * copied with a checksum computed while copying, and only deleted once the
+	 * copy has been read back and matches its size and checksum. If the source
+	 * cannot be deleted then, the copy stays in place and the transfer fails
+	 * with a SourceNotRemovedException.
+	 */
+	MOVE {
+		@Override
+		public Transfer transfer(File source, File destination,
+				boolean verify, boolean claimed) throws IOException {
+			Path sourcePath = source.toPath();
+			Path destinationPath = destination.toPath();
+			checkAvailable(destinationPath, claimed);
+			if (Files.getFileStore(sourcePath).equals(
+					Files.getFileStore(destinationPath.getParent()))) {
+				// Linked under its new name first, so the destination is
+				// claimed atomically and the source is never lost
+				publish(sourcePath, destinationPath);
+				Files.deleteIfExists(sourcePath);
+				return Transfer.IN_PLACE;
+			}
+			String checksum = checkedCopy(sourcePath, destinationPath, true);
+			try {
+				Files.delete(sourcePath);
+			} catch (IOException e) {
+				throw new SourceNotRemovedException(sourcePath, e);
+			}
+			return Transfer.copied(checksum);
+		}
+	};
+
+	/** Size of the buffer the COPY strategy streams through */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Creates CRC-32C checksums on Java 9 and later, or null on Java 8 */
+	private static final Constructor<? extends Checksum> CRC32C = crc32c();
+
+	/**
+	 * Place the source file at the destination. The parent directory of the
+	 * destination must already exist.
+	 *
+	 * @param source
+	 *            - source music file
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @param verify
+	 *            - read the copy back and check it against the checksum
+	 *            computed while copying, before it is published
+	 * @return whether bytes were copied, and their checksum if they were
+	 *         streamed through the JVM
+	 * @throws IOException
+	 *             if the destination exists or the transfer fails
+	 * @throws VerificationException
+	 *             if the copy does not match the source
+	 */
+	public Transfer transfer(File source, File destination, boolean verify)
+			throws IOException {
+		return transfer(source, destination, verify, false);
+	}
+
+	/**
+	 * Place the source file at the destination, which the caller may already
+	 * have claimed in a DestinationIndex. A claimed destination is not
+	 * checked on disk before copying; publishing the copy still fails if the
+	 * destination appeared in the meantime.
+	 *
+	 * @param source
+	 *            - source music file
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @param verify
+	 *            - read the copy back and check it against the checksum
+	 *            computed while copying, before it is published
+	 * @param claimed
+	 *            - true if the destination index found the destination free
+	 * @return whether bytes were copied, and their checksum if they were
+	 *         streamed through the JVM
+	 * @throws IOException
+	 *             if the destination exists or the transfer fails
+	 * @throws VerificationException
+	 *             if the copy does not match the source
+	 */
+	public abstract Transfer transfer(File source, File destination,
+			boolean verify, boolean claimed) throws IOException;
+
+	/**
+	 * Copy through the kernel, or stream and checksum the copy when it is to
+	 * be verified
+	 *
+	 * @param source
+	 *            - file to copy
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @param verify
+	 *            - verify the copy
+	 * @param claimed
+	 *            - true if the destination is known to be free
+	 * @return the checksum of a verified copy, or null
+	 * @throws IOException
+	 *             if the destination exists or the copy fails
+	 */
+	private static String kernelCopy(Path source, Path destination,
+			boolean verify, boolean claimed) throws IOException {
+		checkAvailable(destination, claimed);
+		if (verify) {
+			return checkedCopy(source, destination, true);
+		}
+		channelCopy(source, destination);
+		return null;
+	}
+
+	/**
+	 * Copy a file with FileChannel.transferTo, creating the destination
+	 * atomically
+	 *
+	 * @param source
+	 *            - file to copy
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @throws IOException
+	 *             if the destination exists or the copy fails
+	 */
+	private static void channelCopy(Path source, Path destination)
+			throws IOException {
+		Path tempFile = tempFile(source, destination);
+		try {
+			try (FileChannel in = FileChannel.open(source,
+					StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(tempFile,
+							StandardOpenOption.CREATE,
+							StandardOpenOption.TRUNCATE_EXISTING,
+							StandardOpenOption.WRITE)) {
+				long size = in.size();
+				long position = 0;
+
+				// transferTo may move fewer bytes than asked, keep going
+				while (position < size) {
+					position += in.transferTo(position, size - position, out);
+				}
+			}
+			Files.setLastModifiedTime(tempFile,
+					Files.getLastModifiedTime(source));
+			publish(tempFile, destination);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Stream bytes into a file through a buffer in user space
+	 *
+	 * @param in
+	 *            - the bytes to copy
+	 * @param target
+	 *            - file created or overwritten with the bytes
+	 * @return number of bytes copied
+	 * @throws IOException
+	 *             if the copy fails
+	 */
+	private static long streamCopy(InputStream in, Path target)
+			throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long size = 0;
+		try (OutputStream out = Files.newOutputStream(target)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+				size += read;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Stream a file into the temporary file of its destination, computing a
+	 * checksum of the bytes as they are copied, then publish it. A verified
+	 * copy is read back and compared with the size of the source and the
+	 * checksum before it is published, so verifying costs one read of the
+	 * copy and none of the source.
+	 *
+	 * @param source
+	 *            - file to copy
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @param verify
+	 *            - verify the copy before publishing it
+	 * @return the checksum of the copied bytes
+	 * @throws IOException
+	 *             if the destination exists or the copy fails
+	 * @throws VerificationException
+	 *             if the copy does not match the source
+	 */
+	private static String checkedCopy(Path source, Path destination,
+			boolean verify) throws IOException {
+		Path tempFile = tempFile(source, destination);
+		try {
+			Checksum checksum = newChecksum();
+			long sourceSize = Files.size(source);
+			long copied;
+			try (InputStream in = new CheckedInputStream(
+					Files.newInputStream(source), checksum)) {
+				copied = streamCopy(in, tempFile);
+			}
+
+			// A source truncated or grown during the copy fails the size check
+			if (verify
+					&& (copied != sourceSize
+							|| Files.size(tempFile) != sourceSize || checksum(tempFile) != checksum
+							.getValue())) {
+				throw new VerificationException("The copy of " + source
+						+ " does not match the source");
+			}
+			Files.setLastModifiedTime(tempFile,
+					Files.getLastModifiedTime(source));
+			publish(tempFile, destination);
+			return format(checksum);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Create a checksum, CRC-32C where the runtime has it and CRC-32
+	 * otherwise. Both are computed by the processor on modern hardware.
+	 *
+	 * @return a new checksum
+	 */
+	private static Checksum newChecksum() {
+		if (CRC32C != null) {
+			try {
+				return CRC32C.newInstance();
+			} catch (ReflectiveOperationException e) {
+				// Checked when the constructor was looked up
+			}
+		}
+		return new CRC32();
+	}
+
+	/**
+	 * Look up the CRC-32C checksum, added in Java 9
+	 *
+	 * @return its constructor, or null on older runtimes
+	 */
+	private static Constructor<? extends Checksum> crc32c() {
+		try {
+			return Class.forName("java.util.zip.CRC32C")
+					.asSubclass(Checksum.class).getConstructor();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Format a checksum with the name of its algorithm
+	 *
+	 * @param checksum
+	 *            - the checksum of the copied bytes
+	 * @return the algorithm and checksum, such as crc32c:1a2b3c4d
+	 */
+	private static String format(Checksum checksum) {
+		return String.format("%s:%08x", checksum instanceof CRC32 ? "crc32"
+				: "crc32c", checksum.getValue());
+	}
+
+	/**
+	 * Compute the checksum of a file, with the same algorithm as a copy
+	 *
+	 * @param file
+	 *            - the file
+	 * @return the checksum
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static long checksum(Path file) throws IOException {
+		Checksum checksum = newChecksum();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = new CheckedInputStream(
+				Files.newInputStream(file), checksum)) {
+			while (in.read(buffer) != -1) {
+				// The stream updates the checksum as it is read
+			}
+		}
+		return checksum.getValue();
+	}
+
+	/**
+	 * Fail early, before any bytes are copied, if the destination is already
+	 * taken. The destination is only claimed atomically when it is published.
+	 * A destination claimed in the index is not looked up again, which saves
+	 * a round trip per file on network shares.
+	 *
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @param claimed
+	 *            - true if the destination index found the destination free
+	 * @throws FileAlreadyExistsException
+	 *             if the destination exists
+	 */
+	private static void checkAvailable(Path destination, boolean claimed)
+			throws FileAlreadyExistsException {
+		if (!claimed && Files.exists(destination)) {
+			throw new FileAlreadyExistsException(destination.toString());
+		}
+	}
+
+	/**
+	 * Return the temporary file a copy is written to before it is published.
+	 * The name is hidden, and depends on the source as well as the
+	 * destination, so two sources with the same tags never share one, while a
+	 * copy cut short by a crash is overwritten when the source is migrated
+	 * again. It is built from hashes rather than the destination name, so it
+	 * has a fixed length and fits wherever the destination name does.
+	 *
+	 * @param source
+	 *            - file being copied
+	 * @param destination
+	 *            - destination of the copy
+	 * @return the temporary file, in the destination folder
+	 */
+	private static Path tempFile(Path source, Path destination) {
+		return destination.resolveSibling(String.format(".%08x%08x.part",
+				destination.getFileName().toString().hashCode(), source
+						.toAbsolutePath().hashCode()));
+	}
+
+	/**
+	 * Give a complete temporary file the name of its destination. A hard link
+	 * claims the destination atomically, failing if it exists, after which
+	 * the caller deletes the temporary name. Where the link cannot be made,
+	 * as on FAT volumes and many network shares, the destination is claimed
+	 * by creating it empty, and the temporary file is then renamed over it.
+	 *
+	 * @param tempFile
+	 *            - the complete copy
+	 * @param destination
+	 *            - destination that must not exist yet
+	 * @throws IOException
+	 *             if the destination exists or cannot be created
+	 */
+	private static void publish(Path tempFile, Path destination)
+			throws IOException {
+		try {
+			Files.createLink(destination, tempFile);
+			return;
+		} catch (FileAlreadyExistsException e) {
+			throw e;
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			// No hard links here, claim the name without one
+		}
+
+		// Fails if the destination exists, like the link
+		Files.createFile(destination);
+		try {
+			try {
+				Files.move(tempFile, destination,
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, destination,
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			// Give up the claim rather than leave an empty song behind
+			Files.deleteIfExists(destination);
+			throw e;
+		}
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class for the outcome of a transfer: whether the bytes of the
+	 * source were copied, or the file was linked or renamed into place, and
+	 * the checksum of a copy streamed through the JVM.
+	 */
+	public static final class Transfer {
+
+		/** A file linked or renamed into place, without copying any bytes */
+		static final Transfer IN_PLACE = new Transfer(false, null);
+
+		/** A file copied by the kernel, without a checksum */
+		private static final Transfer KERNEL_COPY = new Transfer(true, null);
+
+		/** True if the bytes of the source were copied */
+		private final boolean copied;
+
+		/** Checksum of the copied bytes, or null */
+		private final String checksum;
+
+		private Transfer(boolean copied, String checksum) {
+			this.copied = copied;
+			this.checksum = checksum;
+		}
+
+		/**
+		 * Return the outcome of a copy
+		 *
+		 * @param checksum
+		 *            - checksum of the copied bytes, or null
+		 * @return the outcome
+		 */
+		static Transfer copied(String checksum) {
+			return checksum == null ? KERNEL_COPY : new Transfer(true,
+					checksum);
+		}
+
+		/**
+		 * Determine whether the bytes of the source were copied
+		 *
+		 * @return false if the file was linked or renamed into place
+		 */
+		public boolean isCopied() {
+			return copied;
+		}
+
+		/**
+		 * Return the checksum of the copied bytes
+		 *
+		 * @return the algorithm and checksum, such as crc32c:1a2b3c4d, or
+		 *         null if no bytes were streamed through the JVM
+		 */
+		public String getChecksum() {
+			return checksum;
+		}
+	}
+
+	/**
+	 * Inner class for a move whose copy is in place at the destination, but
+	 * whose source could not be deleted.
+	 */
+	public static class SourceNotRemovedException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		SourceNotRemovedException(Path source, IOException cause) {
+			super("Copied " + source + " but could not delete it", cause);
+		}
+	}
+
+	/**
+	 * Inner class for a copy that does not match its source when it is read
+	 * back.
+	 */
+	public static class VerificationException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		VerificationException(String message) {
+			super(message);
+		}
+	}
+
+}
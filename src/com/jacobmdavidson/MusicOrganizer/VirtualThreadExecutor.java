@@ -0,0 +1,132 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VirtualThreadExecutor class. Runs the tag parsing and migration of every
+ * file as its own task, so thousands of files blocked on a slow network share
+ * can be in flight at once. A semaphore limits the number of tasks in flight,
+ * and blocks the directory walk when the limit is reached.
+ * 
+ * On a Java runtime that supports virtual threads, each task gets its own
+ * virtual thread. On older runtimes the tasks run on a cached pool of platform
+ * threads, which the semaphore keeps to the same bound.
+ */
+public class VirtualThreadExecutor implements MigrationExecutor {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Receives the result of every migration attempt */
+	private MusicFileList musicFileList;
+
+	/** Runs one task per file */
+	private ExecutorService executor;
+
+	/** One permit for each task allowed in flight */
+	private Semaphore inFlight;
+
+	/** Maximum number of tasks in flight */
+	private int maxInFlight;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new VirtualThreadExecutor
+	 *
+	 * @param musicFileList
+	 *            - receives the result of every migration attempt
+	 * @param maxInFlight
+	 *            - maximum number of files being processed at once
+	 */
+	public VirtualThreadExecutor(MusicFileList musicFileList, int maxInFlight) {
+		this.musicFileList = musicFileList;
+		this.maxInFlight = maxInFlight;
+		inFlight = new Semaphore(maxInFlight);
+		executor = newPerTaskExecutor();
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create an executor that starts a virtual thread for every task, or a
+	 * cached thread pool if the runtime has no virtual threads
+	 *
+	 * @return the executor
+	 */
+	private static ExecutorService newPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors
+					.newCachedThreadPool(new MigrationPipeline.StageThreadFactory(
+							"task"));
+		}
+	}
+
+	@Override
+	public void submit(Path path, BasicFileAttributes attr) {
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException(e);
+		}
+		try {
+			executor.execute(() -> process(path, attr));
+		} catch (RejectedExecutionException e) {
+			inFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Parse and migrate a single file, then give back its permit. Whatever
+	 * the task throws is recorded as the failure of the file, rather than
+	 * lost to the uncaught exception handler of its thread.
+	 *
+	 * @param path
+	 *            - file to process
+	 * @param attr
+	 *            - attributes of the file, read by the walk
+	 */
+	private void process(Path path, BasicFileAttributes attr) {
+		MusicFile musicFile = null;
+		try {
+			musicFile = musicFileList.parseFile(path, attr);
+			if (musicFile != null) {
+				musicFileList.migrate(musicFile, attr);
+			}
+		} catch (Throwable t) {
+			if (musicFile == null) {
+				musicFileList.recordParseFailure(path, attr, t);
+			} else {
+				musicFileList.recordMigrationFailure(musicFile, attr, t);
+			}
+		} finally {
+			inFlight.release();
+		}
+	}
+
+	@Override
+	public void awaitCompletion() throws InterruptedException {
+		// Every permit is free again once the last task has finished
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+}
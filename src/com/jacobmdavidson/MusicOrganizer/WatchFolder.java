@@ -0,0 +1,345 @@
+package com.jacobmdavidson.MusicOrganizer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WatchFolder class. Keeps a drop folder organized for as long as it runs,
+ * instead of walking the whole tree once. Every folder of the tree is
+ * registered with a WatchService, and files that are created or modified are
+ * remembered until they have stopped growing for the settle time. The settled
+ * files are then migrated in batches, each batch through the same parse and
+ * migrate path as a traversal. The migration is started once for the whole
+ * session, so a batch costs the files in it rather than the size of the
+ * library: each batch only forces the error log and journal to disk, and the
+ * scan index is saved when watching stops. Folders created while watching
+ * are registered and their files picked up, and if the watch service loses
+ * events the tree is scanned again. Files already in the tree when watching
+ * starts form the first batches.
+ */
+public class WatchFolder {
+
+	// -----------------------------------------------------------------------
+	// Attributes
+	// -----------------------------------------------------------------------
+
+	/** Migrates every batch of settled files */
+	private final MusicFileList musicFileList;
+
+	/** Leaves hidden, excluded and output folders unwatched */
+	private final ScanFilter filter;
+
+	/** How long a file must stay unchanged before it is migrated */
+	private final long settleNanos;
+
+	/** Maximum number of files migrated in one batch */
+	private final int batchSize;
+
+	/** Receives the events of every watched folder */
+	private WatchService watchService;
+
+	/** Watched folders, by their watch key */
+	private final Map<WatchKey, Path> folders = new HashMap<WatchKey, Path>();
+
+	/** Files waiting to settle, in the order they were first seen */
+	private final Map<Path, PendingFile> pending =
+			new LinkedHashMap<Path, PendingFile>();
+
+	/** Set once stop is called */
+	private volatile boolean stopped;
+
+	// -----------------------------------------------------------------------
+	// Constructors
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Create a new WatchFolder
+	 *
+	 * @param musicFileList
+	 *            - migrates the settled files, its error log already
+	 *            initialized
+	 * @param outputPath
+	 *            - folder music is organized into, never watched
+	 * @param config
+	 *            - the settle time, batch size and scan filter settings
+	 */
+	public WatchFolder(MusicFileList musicFileList, String outputPath,
+			OrganizerConfig config) {
+		this.musicFileList = musicFileList;
+		filter = new ScanFilter(config, outputPath);
+		settleNanos = TimeUnit.MILLISECONDS.toNanos(config
+				.getWatchSettleMillis());
+		batchSize = config.getWatchBatchSize();
+	}
+
+	// -----------------------------------------------------------------------
+	// Methods
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Watch a folder tree and migrate the files dropped into it, until stop
+	 * is called or the thread is interrupted. The batch being migrated when
+	 * watching stops is finished first.
+	 *
+	 * @param root
+	 *            - the drop folder
+	 * @throws IOException
+	 *             if the folder cannot be watched
+	 * @throws InterruptedException
+	 *             if interrupted while migrating a batch
+	 */
+	public void watch(Path root) throws IOException, InterruptedException {
+		watchService = root.getFileSystem().newWatchService();
+		musicFileList.startMigration();
+		try {
+			register(root, root);
+			long tick = Math.max(1,
+					TimeUnit.NANOSECONDS.toMillis(settleNanos) / 2);
+			while (!stopped) {
+				WatchKey key = watchService.poll(tick, TimeUnit.MILLISECONDS);
+				while (key != null) {
+					processEvents(key, root);
+					key = watchService.poll();
+				}
+				List<Path> settled;
+				while (!(settled = takeSettled()).isEmpty()) {
+					migrate(settled);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// Stopped
+		} finally {
+			watchService.close();
+			musicFileList.awaitMigration();
+		}
+	}
+
+	/**
+	 * Stop watching once the current batch has been migrated. Safe to call
+	 * from any thread.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Handle the events of one folder: remember created and modified files,
+	 * and register created folders
+	 *
+	 * @param key
+	 *            - the signalled key
+	 * @param root
+	 *            - the drop folder, scanned again if events were lost
+	 */
+	private void processEvents(WatchKey key, Path root) {
+		Path folder = folders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Events were lost, files the scan index knows are skipped
+				register(root, root);
+			} else if (folder != null) {
+				Path path = folder.resolve((Path) event.context());
+				BasicFileAttributes attr;
+				try {
+					attr = Files.readAttributes(path,
+							BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException e) {
+					// Gone already, renamed or deleted by the dropper
+					continue;
+				}
+				if (attr.isDirectory()) {
+					if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+						// Files moved in with the folder raise no events
+						register(path, root);
+					}
+				} else if (attr.isRegularFile()) {
+					remember(path);
+				}
+			}
+		}
+		if (!key.reset()) {
+			// The folder was deleted or can no longer be watched
+			folders.remove(key);
+		}
+	}
+
+	/**
+	 * Watch a folder and every folder below it that is not pruned, and
+	 * remember the files already in them
+	 *
+	 * @param start
+	 *            - the folder
+	 * @param root
+	 *            - the drop folder, never pruned
+	 */
+	private void register(Path start, Path root) {
+		try {
+			Files.walkFileTree(start, new RegisteringVisitor(root));
+		} catch (IOException e) {
+			System.out.println(e.toString());
+		}
+	}
+
+	/**
+	 * Remember a file that was created or changed, restarting its settle time
+	 *
+	 * @param file
+	 *            - the file
+	 */
+	private void remember(Path file) {
+		PendingFile pendingFile = pending.get(file);
+		if (pendingFile == null) {
+			pending.put(file, new PendingFile());
+		} else {
+			pendingFile.changed = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Take up to one batch of files that have stopped growing for the settle
+	 * time. A file whose size or modification time moved since it was last
+	 * looked at starts settling again.
+	 *
+	 * @return the settled files, possibly none
+	 */
+	private List<Path> takeSettled() {
+		List<Path> settled = new ArrayList<Path>();
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Path, PendingFile>> entries = pending.entrySet()
+				.iterator();
+		while (entries.hasNext() && settled.size() < batchSize) {
+			Map.Entry<Path, PendingFile> entry = entries.next();
+			PendingFile pendingFile = entry.getValue();
+			BasicFileAttributes attr;
+			try {
+				attr = Files.readAttributes(entry.getKey(),
+						BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			} catch (IOException e) {
+				// Deleted or moved away before it settled
+				entries.remove();
+				continue;
+			}
+			long modified = attr.lastModifiedTime().toMillis();
+			if (attr.size() != pendingFile.size
+					|| modified != pendingFile.modified) {
+				pendingFile.size = attr.size();
+				pendingFile.modified = modified;
+				pendingFile.changed = now;
+			} else if (now - pendingFile.changed >= settleNanos) {
+				settled.add(entry.getKey());
+				entries.remove();
+			}
+		}
+		return settled;
+	}
+
+	/**
+	 * Migrate a batch of settled files through the traversal path, and report
+	 * the results of the session so far
+	 *
+	 * @param batch
+	 *            - the settled files
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the migration
+	 */
+	private void migrate(List<Path> batch) throws InterruptedException {
+		try {
+			for (Path file : batch) {
+				try {
+					musicFileList.visitFile(file, Files.readAttributes(file,
+							BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS));
+				} catch (IOException e) {
+					musicFileList.visitFileFailed(file, e);
+				}
+			}
+		} finally {
+			musicFileList.awaitBatch();
+		}
+		musicFileList.reportSummary();
+	}
+
+	// -----------------------------------------------------------------------
+	// Inner Classes
+	// -----------------------------------------------------------------------
+
+	/**
+	 * Inner class that watches the folders of a walk that are not pruned, and
+	 * remembers the files found in them.
+	 */
+	private class RegisteringVisitor extends SimpleFileVisitor<Path> {
+
+		/** The drop folder, never pruned */
+		private final Path root;
+
+		RegisteringVisitor(Path root) {
+			this.root = root;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path directory,
+				BasicFileAttributes attr) {
+			if (!directory.equals(root) && filter.prunes(directory, attr)) {
+				return FileVisitResult.SKIP_SUBTREE;
+			}
+			try {
+				folders.put(directory.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY), directory);
+			} catch (IOException e) {
+				// Removed while it was being registered
+				System.out.println(e.toString());
+				return FileVisitResult.SKIP_SUBTREE;
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
+			if (attr.isRegularFile()) {
+				remember(file);
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException exc) {
+			System.out.println(exc.toString());
+			return FileVisitResult.CONTINUE;
+		}
+	}
+
+	/**
+	 * Inner class holding what was last seen of a file waiting to settle.
+	 */
+	static class PendingFile {
+
+		/** Size when the file was last looked at, -1 before the first look */
+		long size = -1;
+
+		/** Modification time when the file was last looked at */
+		long modified;
+
+		/** When the file was last seen to change, from System.nanoTime */
+		long changed = System.nanoTime();
+	}
+
+}